@@ -0,0 +1,43 @@
+package habit.habittracker.benchmarks;
+
+import habit.habittracker.models.Habit;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Детерминированные данные для бенчмарков: фиксированная дата и seed, чтобы прогоны были сравнимы
+final class BenchmarkData {
+    static final LocalDate TODAY = LocalDate.of(2025, 6, 30);
+
+    private BenchmarkData() {
+    }
+
+    // count отметок, заканчивающихся сегодня: серии по 1–14 дней с пропусками по 1–3 дня
+    static List<LocalDate> completions(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<LocalDate> dates = new ArrayList<>(count);
+        LocalDate day = TODAY;
+        while (dates.size() < count) {
+            int run = 1 + random.nextInt(14);
+            for (int i = 0; i < run && dates.size() < count; i++) {
+                dates.add(day);
+                day = day.minusDays(1);
+            }
+            day = day.minusDays(1 + random.nextInt(3));
+        }
+        return dates.reversed();
+    }
+
+    static List<Habit> habits(int count, int completionsPerHabit) {
+        List<Habit> habits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            List<LocalDate> dates = completions(completionsPerHabit, i);
+            LocalDateTime createdAt = dates.isEmpty() ? TODAY.atStartOfDay() : dates.get(0).atStartOfDay();
+            habits.add(new Habit((long) i + 1, "Habit " + i, "Description " + i, 1 + i % 7, createdAt, dates));
+        }
+        return habits;
+    }
+}
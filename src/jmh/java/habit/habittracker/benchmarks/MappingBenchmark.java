@@ -0,0 +1,45 @@
+package habit.habittracker.benchmarks;
+
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.models.Habit;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Маппинг больших списков: entity -> DTO (ответы GET /habits) и DTO -> entity (импорт, создание)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class MappingBenchmark {
+
+    @Param({"1000", "10000"})
+    public int habits;
+
+    @Param({"30", "365"})
+    public int completionsPerHabit;
+
+    private List<Habit> entities;
+    private List<HabitDTO> dtos;
+
+    @Setup
+    public void setUp() {
+        entities = BenchmarkData.habits(habits, completionsPerHabit);
+        dtos = entities.stream().map(HabitDTO::fromEntity).toList();
+    }
+
+    @Benchmark
+    public List<HabitDTO> fromEntity() {
+        List<HabitDTO> result = new ArrayList<>(entities.size());
+        for (Habit habit : entities) result.add(HabitDTO.fromEntity(habit));
+        return result;
+    }
+
+    @Benchmark
+    public List<Habit> fromDto() {
+        List<Habit> result = new ArrayList<>(dtos.size());
+        for (HabitDTO dto : dtos) result.add(Habit.fromDto(dto));
+        return result;
+    }
+}
@@ -0,0 +1,65 @@
+package habit.habittracker.benchmarks;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import habit.habittracker.config.BinaryFormatConfig;
+import habit.habittracker.dto.HabitDTO;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Сериализация списка HabitDTO в JSON, CBOR и Smile теми же настройками, что у конвертеров ответа.
+// Размер одного ответа в байтах — во вспомогательном счётчике payloadBytes рядом со временем.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"50", "500"})
+    public int habits;
+
+    @Param({"30", "365"})
+    public int completionsPerHabit;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private ObjectWriter writer;
+    private List<HabitDTO> page;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Payload {
+        public long payloadBytes;
+    }
+
+    @Setup
+    public void setUp() {
+        page = BenchmarkData.habits(habits, completionsPerHabit).stream().map(HabitDTO::fromEntity).toList();
+        ObjectMapper mapper = switch (format) {
+            case "cbor" -> BinaryFormatConfig.binaryMapper(builder(), new CBORFactory());
+            case "smile" -> BinaryFormatConfig.binaryMapper(builder(), new SmileFactory());
+            default -> builder().build();
+        };
+        writer = mapper.writerFor(mapper.getTypeFactory().constructCollectionType(List.class, HabitDTO.class));
+    }
+
+    @Benchmark
+    public void serialize(Payload payload, Blackhole blackhole) throws JsonProcessingException {
+        byte[] bytes = writer.writeValueAsBytes(page);
+        payload.payloadBytes = bytes.length;
+        blackhole.consume(bytes);
+    }
+
+    // как spring.jackson.* в application.yaml
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().serializationInclusion(JsonInclude.Include.NON_NULL);
+    }
+}
@@ -0,0 +1,61 @@
+package habit.habittracker.benchmarks;
+
+import habit.habittracker.models.CompletionSet;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.models.StreakEngine;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+// Расчёт статистики одной привычки: полная перестройка проекции, текущая серия и доля выполнения
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StatsBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    public int completions;
+
+    private CompletionSet set;
+    private HabitStats stats;
+    private LocalDateTime createdAt;
+    private int[] epochDays;
+
+    @Setup
+    public void setUp() {
+        set = CompletionSet.of(BenchmarkData.completions(completions, 42));
+        stats = HabitStats.of(1L, set);
+        createdAt = set.toDates().get(0).atStartOfDay();
+        epochDays = set.toEpochDays();
+    }
+
+    // то, что делает getStats без проекции: longest streak и total по всем отметкам
+    @Benchmark
+    public HabitStats rebuild() {
+        return HabitStats.of(1L, set);
+    }
+
+    @Benchmark
+    public int currentStreak() {
+        return stats.currentStreak(BenchmarkData.TODAY, set);
+    }
+
+    @Benchmark
+    public double successRate() {
+        return HabitStats.successRate(stats.getTotalDone(),
+                HabitStats.idealCompletions(createdAt, 3, BenchmarkData.TODAY));
+    }
+
+    @Benchmark
+    public StreakEngine.Result engineDaily() {
+        return StreakEngine.evaluate(epochDays, StreakEngine.Mode.DAILY, 7,
+                createdAt.toLocalDate().toEpochDay(), BenchmarkData.TODAY.toEpochDay());
+    }
+
+    @Benchmark
+    public StreakEngine.Result engineWeekly() {
+        return StreakEngine.evaluate(epochDays, StreakEngine.Mode.WEEKLY, 3,
+                createdAt.toLocalDate().toEpochDay(), BenchmarkData.TODAY.toEpochDay());
+    }
+}
@@ -0,0 +1,56 @@
+package habit.habittracker.loadtest;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Байты, выделенные потоком запроса, по эндпоинтам ("GET /habits/{id}/stats"). На виртуальных
+// потоках JVM счётчик не отдаёт — такие запросы не учитываются.
+public class AllocationFilter extends OncePerRequestFilter {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Map<String, LongAdder> allocated = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long before = THREADS.getCurrentThreadAllocatedBytes();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long after = THREADS.getCurrentThreadAllocatedBytes();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            if (before >= 0 && after >= before && pattern != null) {
+                String endpoint = request.getMethod() + " " + pattern;
+                allocated.computeIfAbsent(endpoint, key -> new LongAdder()).add(after - before);
+                requests.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+            }
+        }
+    }
+
+    public void reset() {
+        allocated.clear();
+        requests.clear();
+    }
+
+    public long allocatedBytes(String endpoint) {
+        LongAdder bytes = allocated.get(endpoint);
+        return (bytes == null) ? 0 : bytes.sum();
+    }
+
+    public long requests(String endpoint) {
+        LongAdder count = requests.get(endpoint);
+        return (count == null) ? 0 : count.sum();
+    }
+}
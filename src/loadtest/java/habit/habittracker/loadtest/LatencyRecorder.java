@@ -0,0 +1,44 @@
+package habit.habittracker.loadtest;
+
+import java.util.Arrays;
+
+// Задержки одного эндпоинта в одном потоке нагрузки, в наносекундах. Без синхронизации:
+// каждый поток пишет в свой экземпляр, сливаются они после прогона.
+class LatencyRecorder {
+    private long[] values = new long[1024];
+    private int size;
+    private int errors;
+
+    void record(long nanos) {
+        if (size == values.length) values = Arrays.copyOf(values, size * 2);
+        values[size++] = nanos;
+    }
+
+    void error() {
+        errors++;
+    }
+
+    int count() {
+        return size;
+    }
+
+    int errors() {
+        return errors;
+    }
+
+    void addAll(LatencyRecorder other) {
+        if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(size + other.size, values.length * 2));
+        System.arraycopy(other.values, 0, values, size, other.size);
+        size += other.size;
+        errors += other.errors;
+    }
+
+    // перцентиль по отсортированной копии, в миллисекундах
+    double percentileMillis(double percentile) {
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return sorted[Math.max(0, Math.min(index, size - 1))] / 1_000_000.0;
+    }
+}
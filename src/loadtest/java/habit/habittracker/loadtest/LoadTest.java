@@ -0,0 +1,232 @@
+package habit.habittracker.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import habit.habittracker.HabitTrackerApplication;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitPageDTO;
+import habit.habittracker.services.HabitImportService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Нагрузочный прогон: поднимает HabitTrackerApplication на H2 в памяти, засевает привычки со
+// степенным распределением числа отметок и гоняет смесь запросов с фиксированной конкурентностью.
+// Запуск: ./gradlew loadTest -Ploadtest.habits=100000 -Ploadtest.concurrency=32 -Ploadtest.duration=60
+public class LoadTest {
+    private static final int SEED_CHUNK = 5000;
+    private static final int PAGE_SIZE = 50;
+    private static final int WRITE_WINDOW_DAYS = 30;
+
+    enum Endpoint {
+        LIST("GET /habits"),
+        DONE("POST /habits/{id}/done"),
+        TOGGLE("POST /habits/{id}/toggle"),
+        STATS("GET /habits/{id}/stats");
+
+        final String pattern;
+
+        Endpoint(String pattern) {
+            this.pattern = pattern;
+        }
+    }
+
+    record Settings(int habits, int maxCompletions, double alpha, int concurrency, int warmupSeconds,
+                    int durationSeconds, long seed, Map<Endpoint, Integer> mix, String profiles, Path report) {
+
+        static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("loadtest.habits", 100_000),
+                    Integer.getInteger("loadtest.maxCompletions", 3650),
+                    Double.parseDouble(System.getProperty("loadtest.alpha", "1.2")),
+                    Integer.getInteger("loadtest.concurrency", 32),
+                    Integer.getInteger("loadtest.warmup", 10),
+                    Integer.getInteger("loadtest.duration", 60),
+                    Long.getLong("loadtest.seed", 42L),
+                    parseMix(System.getProperty("loadtest.mix", "list:20,done:30,toggle:20,stats:30")),
+                    System.getProperty("loadtest.profiles", ""),
+                    Path.of(System.getProperty("loadtest.report", "build/reports/loadtest/results.json")));
+        }
+
+        // "list:20,done:30" — веса эндпоинтов; не упомянутые не вызываются
+        private static Map<Endpoint, Integer> parseMix(String mix) {
+            Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+            for (String part : mix.split(",")) {
+                String[] pair = part.trim().split(":");
+                weights.put(Endpoint.valueOf(pair[0].trim().toUpperCase()), Integer.parseInt(pair[1].trim()));
+            }
+            return weights;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings = Settings.fromSystemProperties();
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(HabitTrackerApplication.class, LoadTestServerConfig.class)
+                .profiles(settings.profiles().isBlank() ? new String[0] : settings.profiles().split(","))
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create-drop",
+                        "spring.jpa.show-sql=false",
+                        "habit.completions.migrate-legacy=false",
+                        "logging.level.root=WARN")
+                .run(args)) {
+            long[] ids = seed(context.getBean(HabitImportService.class), settings);
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            AllocationFilter allocations = context.getBean(AllocationFilter.class);
+
+            System.out.printf("Warm-up %ds at concurrency %d%n", settings.warmupSeconds(), settings.concurrency());
+            drive(port, ids, settings, settings.warmupSeconds());
+            allocations.reset();
+            System.out.printf("Measuring %ds%n", settings.durationSeconds());
+            Map<Endpoint, LatencyRecorder> results = drive(port, ids, settings, settings.durationSeconds());
+
+            Map<String, Object> report = report(settings, results, allocations);
+            Files.createDirectories(settings.report().toAbsolutePath().getParent());
+            context.getBean(ObjectMapper.class).copy().enable(SerializationFeature.INDENT_OUTPUT)
+                    .writeValue(settings.report().toFile(), report);
+            System.out.println("Report written to " + settings.report().toAbsolutePath());
+        }
+    }
+
+    // Число отметок ~ Парето(alpha) от 1 до maxCompletions: большинство привычек с короткой историей,
+    // немногие — с многолетней. Отметки идут сериями назад от сегодняшнего дня с редкими пропусками.
+    private static long[] seed(HabitImportService importService, Settings settings) {
+        SplittableRandom random = new SplittableRandom(settings.seed());
+        LocalDate today = LocalDate.now();
+        List<Long> ids = new ArrayList<>(settings.habits());
+        long totalCompletions = 0;
+        long started = System.nanoTime();
+        for (int from = 0; from < settings.habits(); from += SEED_CHUNK) {
+            int chunkSize = Math.min(SEED_CHUNK, settings.habits() - from);
+            List<HabitDTO> chunk = new ArrayList<>(chunkSize);
+            for (int i = 0; i < chunkSize; i++) {
+                int count = (int) Math.min(settings.maxCompletions(),
+                        Math.floor(1 / Math.pow(1 - random.nextDouble(), 1 / settings.alpha())));
+                List<LocalDate> dates = new ArrayList<>(count);
+                LocalDate day = today;
+                while (dates.size() < count) {
+                    if (random.nextInt(10) < 8) dates.add(day);
+                    day = day.minusDays(1);
+                }
+                totalCompletions += count;
+                chunk.add(new HabitDTO(null, "Habit " + (from + i), null, 1 + random.nextInt(7),
+                        day.atStartOfDay(), dates));
+            }
+            ids.addAll(importService.importHabits(chunk).getIds());
+        }
+        System.out.printf("Seeded %d habits, %d completions in %ds%n", ids.size(), totalCompletions,
+                Duration.ofNanos(System.nanoTime() - started).toSeconds());
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static Map<Endpoint, LatencyRecorder> drive(int port, long[] ids, Settings settings, int seconds)
+            throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        String base = "http://localhost:" + port;
+        Endpoint[] wheel = wheel(settings.mix());
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+
+        ExecutorService workers = Executors.newFixedThreadPool(settings.concurrency());
+        List<Future<Map<Endpoint, LatencyRecorder>>> futures = new ArrayList<>();
+        for (int w = 0; w < settings.concurrency(); w++) {
+            SplittableRandom random = new SplittableRandom(settings.seed() * 31 + w);
+            futures.add(workers.submit(() -> {
+                Map<Endpoint, LatencyRecorder> latencies = new EnumMap<>(Endpoint.class);
+                while (System.nanoTime() < deadline) {
+                    Endpoint endpoint = wheel[random.nextInt(wheel.length)];
+                    HttpRequest request = request(base, endpoint, ids[random.nextInt(ids.length)], random);
+                    LatencyRecorder recorder = latencies.computeIfAbsent(endpoint, key -> new LatencyRecorder());
+                    long started = System.nanoTime();
+                    try {
+                        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                        if (response.statusCode() / 100 == 2) recorder.record(System.nanoTime() - started);
+                        else recorder.error();
+                    } catch (IOException e) {
+                        recorder.error();
+                    }
+                }
+                return latencies;
+            }));
+        }
+        Map<Endpoint, LatencyRecorder> merged = new EnumMap<>(Endpoint.class);
+        for (Future<Map<Endpoint, LatencyRecorder>> future : futures) {
+            future.get().forEach((endpoint, recorder) ->
+                    merged.computeIfAbsent(endpoint, key -> new LatencyRecorder()).addAll(recorder));
+        }
+        workers.shutdown();
+        return merged;
+    }
+
+    private static HttpRequest request(String base, Endpoint endpoint, long id, SplittableRandom random) {
+        LocalDate date = LocalDate.now().minusDays(random.nextInt(WRITE_WINDOW_DAYS));
+        return switch (endpoint) {
+            case LIST -> HttpRequest.newBuilder(URI.create(base + "/habits?limit=" + PAGE_SIZE
+                    + "&after=" + HabitPageDTO.encodeCursor(id))).GET().build();
+            case DONE -> HttpRequest.newBuilder(URI.create(base + "/habits/" + id + "/done?date=" + date))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+            case TOGGLE -> HttpRequest.newBuilder(URI.create(base + "/habits/" + id + "/toggle?date=" + date))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+            case STATS -> HttpRequest.newBuilder(URI.create(base + "/habits/" + id + "/stats")).GET().build();
+        };
+    }
+
+    // эндпоинт, повторённый по своему весу: случайный индекс даёт нужную долю вызовов
+    private static Endpoint[] wheel(Map<Endpoint, Integer> mix) {
+        List<Endpoint> wheel = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) wheel.add(endpoint);
+        });
+        if (wheel.isEmpty()) throw new IllegalArgumentException("loadtest.mix has no positive weights");
+        return wheel.toArray(Endpoint[]::new);
+    }
+
+    private static Map<String, Object> report(Settings settings, Map<Endpoint, LatencyRecorder> results,
+                                              AllocationFilter allocations) {
+        double seconds = settings.durationSeconds();
+        System.out.printf("%-26s %10s %8s %9s %9s %12s %10s%n",
+                "endpoint", "req/s", "errors", "p50 ms", "p99 ms", "alloc/req", "alloc MB/s");
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        results.forEach((endpoint, recorder) -> {
+            long served = allocations.requests(endpoint.pattern);
+            long bytes = allocations.allocatedBytes(endpoint.pattern);
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("requests", recorder.count());
+            row.put("errors", recorder.errors());
+            row.put("throughput", recorder.count() / seconds);
+            row.put("p50Millis", recorder.percentileMillis(50));
+            row.put("p99Millis", recorder.percentileMillis(99));
+            row.put("allocatedBytesPerRequest", (served == 0) ? null : bytes / served);
+            row.put("allocationMegabytesPerSecond", bytes / seconds / (1024 * 1024));
+            endpoints.put(endpoint.pattern, row);
+            System.out.printf("%-26s %10.1f %8d %9.2f %9.2f %12s %10.1f%n", endpoint.pattern,
+                    recorder.count() / seconds, recorder.errors(), recorder.percentileMillis(50),
+                    recorder.percentileMillis(99), (served == 0) ? "n/a" : String.valueOf(bytes / served),
+                    bytes / seconds / (1024 * 1024));
+        });
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("settings", settings);
+        report.put("endpoints", endpoints);
+        return report;
+    }
+}
@@ -0,0 +1,22 @@
+package habit.habittracker.loadtest;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class LoadTestServerConfig {
+
+    @Bean
+    public AllocationFilter allocationFilter() {
+        return new AllocationFilter();
+    }
+
+    @Bean
+    public FilterRegistrationBean<AllocationFilter> allocationFilterRegistration(AllocationFilter filter) {
+        FilterRegistrationBean<AllocationFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,70 @@
+package habit.habittracker.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+// Бинарные ответы по Accept: application/cbor и application/x-jackson-smile. Настройки те же,
+// что у JSON (spring.jackson.*), но LocalDate пишется числом дней от эпохи. Конвертеры встают
+// на место стандартных CBOR/Smile — после JSON, поэтому без Accept по-прежнему отдаётся JSON.
+@Configuration
+public class BinaryFormatConfig {
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(binaryMapper(builder, new CBORFactory()));
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(binaryMapper(builder, new SmileFactory()));
+    }
+
+    public static ObjectMapper binaryMapper(Jackson2ObjectMapperBuilder builder, JsonFactory factory) {
+        ObjectMapper mapper = builder.factory(factory).build();
+        // зарегистрирован последним, поэтому перекрывает LocalDate из JavaTimeModule
+        mapper.registerModule(epochDayModule());
+        return mapper;
+    }
+
+    public static SimpleModule epochDayModule() {
+        SimpleModule module = new SimpleModule("EpochDayModule");
+        module.addSerializer(LocalDate.class, new EpochDaySerializer());
+        module.addDeserializer(LocalDate.class, new EpochDayDeserializer());
+        return module;
+    }
+
+    static class EpochDaySerializer extends JsonSerializer<LocalDate> {
+        @Override
+        public void serialize(LocalDate value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeNumber(value.toEpochDay());
+        }
+    }
+
+    // число — день от эпохи; строку ISO тоже принимаем, чтобы клиент мог переходить постепенно
+    static class EpochDayDeserializer extends JsonDeserializer<LocalDate> {
+        @Override
+        public LocalDate deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) return LocalDate.ofEpochDay(parser.getLongValue());
+            if (parser.currentToken() == JsonToken.VALUE_STRING) return LocalDate.parse(parser.getText().trim());
+            return (LocalDate) context.handleUnexpectedToken(LocalDate.class, parser);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package habit.habittracker.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+// Размер, TTL и сбор статистики кэша задаются в spring.cache.caffeine.spec,
+// выключается кэш через spring.cache.type=none.
+// Кэш оборачивает транзакцию снаружи, чтобы @CacheEvict срабатывал уже после коммита.
+@Configuration
+@EnableCaching(order = Ordered.LOWEST_PRECEDENCE - 1)
+public class CacheConfig {
+    public static final String HABIT_STATS = "habitStats";
+    // Пакетная статистика (GET /habits/stats?ids=) — без скользящих окон, поэтому в своём кэше:
+    // иначе GET /habits/{id}/stats отдал бы из общего кэша ответ без rolling
+    public static final String HABIT_STATS_BATCH = "habitStatsBatch";
+}
@@ -0,0 +1,46 @@
+package habit.habittracker.config;
+
+import habit.habittracker.models.Habit;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+// habits.id раньше выдавался IDENTITY. На существующей базе свежий habits_seq начинается с 1
+// и столкнётся со старыми id, поэтому при старте сдвигаем его за MAX(id). Сдвиг только вперёд.
+// Выполняется после создания бинов, но до старта веб-сервера (ApplicationRunner запускался бы, когда
+// Tomcat уже принимает запросы, и POST /habits успевал бы взять занятый id).
+@Component
+public class HabitSequenceAlignment implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(HabitSequenceAlignment.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Dialect dialect;
+
+    public HabitSequenceAlignment(JdbcTemplate jdbcTemplate, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dialect = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        align();
+    }
+
+    public boolean align() {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM habits", Long.class);
+        if (maxId == null || maxId == 0) return false;
+        Long next = jdbcTemplate.queryForObject(
+                dialect.getSequenceSupport().getSequenceNextValString(Habit.ID_SEQUENCE), Long.class);
+        // значение sequence — верхняя граница блока из ID_ALLOCATION_SIZE id, весь блок должен быть свободен
+        if (next != null && next - Habit.ID_ALLOCATION_SIZE >= maxId) return false;
+        long restartWith = maxId + Habit.ID_ALLOCATION_SIZE + 1;
+        jdbcTemplate.execute("ALTER SEQUENCE " + Habit.ID_SEQUENCE + " RESTART WITH " + restartWith);
+        log.info("Moved {} to {} past existing habit ids", Habit.ID_SEQUENCE, restartWith);
+        return true;
+    }
+}
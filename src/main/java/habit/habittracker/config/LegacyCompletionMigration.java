@@ -0,0 +1,105 @@
+package habit.habittracker.config;
+
+import habit.habittracker.models.CompletionSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Переносит строки старой таблицы habit_completions (строка на день) в годовые битовые маски
+// habit_completion_years и удаляет старую таблицу. Если старой таблицы нет — ничего не делает.
+// Как и HabitSequenceAlignment, выполняется до старта веб-сервера: запросы не видят неперенесённых отметок.
+@Component
+@ConditionalOnProperty(name = "habit.completions.migrate-legacy", havingValue = "true", matchIfMissing = true)
+public class LegacyCompletionMigration implements SmartInitializingSingleton {
+    private static final Logger log = LoggerFactory.getLogger(LegacyCompletionMigration.class);
+    public static final String LEGACY_TABLE = "habit_completions";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public LegacyCompletionMigration(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        migrate();
+    }
+
+    public int migrate() {
+        if (!legacyTableExists()) return 0;
+        Integer habits = transactionTemplate.execute(status -> {
+            HabitFolder folder = new HabitFolder();
+            jdbcTemplate.query("SELECT habit_id, done_date FROM " + LEGACY_TABLE + " ORDER BY habit_id", folder);
+            folder.flush();
+            jdbcTemplate.execute("DROP TABLE " + LEGACY_TABLE);
+            return folder.habits;
+        });
+        log.info("Migrated completions of {} habits from {} to habit_completion_years", habits, LEGACY_TABLE);
+        return habits;
+    }
+
+    private boolean legacyTableExists() {
+        try {
+            jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + LEGACY_TABLE + " WHERE 1 = 0", Integer.class);
+            return true;
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    // Строки идут по habit_id, поэтому в памяти держим маски только одной привычки
+    private final class HabitFolder implements RowCallbackHandler {
+        private Long habitId;
+        private SortedMap<Integer, byte[]> years;
+        private int habits;
+
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long id = rs.getLong("habit_id");
+            if (habitId == null || habitId != id) {
+                flush();
+                habitId = id;
+                years = loadYears(id);
+            }
+            new CompletionSet(years).add(rs.getObject("done_date", LocalDate.class));
+        }
+
+        void flush() {
+            if (habitId == null) return;
+            jdbcTemplate.update("DELETE FROM habit_completion_years WHERE habit_id = ?", habitId);
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Integer, byte[]> year : years.entrySet()) {
+                rows.add(new Object[]{habitId, year.getKey(), year.getValue()});
+            }
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO habit_completion_years (habit_id, completion_year, days) VALUES (?, ?, ?)", rows);
+            habits++;
+        }
+
+        // уже существующие маски сливаем с перенесёнными датами, чтобы повторный запуск ничего не терял
+        private SortedMap<Integer, byte[]> loadYears(long id) {
+            SortedMap<Integer, byte[]> loaded = new TreeMap<>();
+            jdbcTemplate.query("SELECT completion_year, days FROM habit_completion_years WHERE habit_id = ?",
+                    (RowCallbackHandler) rs -> loaded.put(rs.getInt("completion_year"), rs.getBytes("days")), id);
+            return loaded;
+        }
+    }
+}
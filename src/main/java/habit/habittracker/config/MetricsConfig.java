@@ -0,0 +1,40 @@
+package habit.habittracker.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+// Таймеры методов сервисов — @Timed (management.observations.annotations.enabled), HTTP-таймеры
+// и кэш Boot собирает сам; здесь только счётчик SQL на запрос.
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+    private final SqlStatementMetrics sqlStatementMetrics;
+
+    public MetricsConfig(ObjectProvider<MeterRegistry> registry) {
+        this.sqlStatementMetrics = new SqlStatementMetrics(registry);
+    }
+
+    // inspector, заданный явно в spring.jpa.properties, не перетираем
+    @Bean
+    public HibernatePropertiesCustomizer sqlStatementMetricsCustomizer() {
+        return properties -> properties.putIfAbsent(AvailableSettings.STATEMENT_INSPECTOR, sqlStatementMetrics);
+    }
+
+    // тело StreamingResponseBody (выгрузка) пишется в потоке исполнителя — счётчик переносится туда
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(sqlStatementMetrics);
+    }
+
+    // /habits:bulk — отдельный путь импорта, под /habits/** он не попадает
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(sqlStatementMetrics).addPathPatterns("/habits/**", "/habits:bulk");
+    }
+}
@@ -0,0 +1,10 @@
+package habit.habittracker.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// задачи по расписанию: свёртка старых отметок в архив (habit.archive.cron)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -0,0 +1,84 @@
+package habit.habittracker.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.concurrent.Callable;
+
+// Число SQL на запрос: Hibernate отдаёт каждый подготовленный запрос в inspect, счётчик запроса
+// лежит в его атрибуте и привязан к потоку, который сейчас его обрабатывает, и пишется в
+// http.server.requests.sql по шаблону URI. Асинхронный запрос (выгрузка через StreamingResponseBody)
+// считается и в потоке, который пишет тело, и записывается по завершении async-диспатча.
+// SQL мимо Hibernate (JdbcTemplate) и запросы из прочих потоков не считаются.
+public class SqlStatementMetrics implements StatementInspector, AsyncHandlerInterceptor, CallableProcessingInterceptor {
+    private static final ThreadLocal<int[]> STATEMENTS = new ThreadLocal<>();
+    private static final String COUNT_ATTRIBUTE = SqlStatementMetrics.class.getName() + ".count";
+
+    private final ObjectProvider<MeterRegistry> registry;
+
+    public SqlStatementMetrics(ObjectProvider<MeterRegistry> registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] count = STATEMENTS.get();
+        if (count != null) count[0]++;
+        return sql;
+    }
+
+    // async-диспатч того же запроса продолжает его счётчик
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        int[] count = (int[]) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) {
+            count = new int[1];
+            request.setAttribute(COUNT_ATTRIBUTE, count);
+        }
+        STATEMENTS.set(count);
+        return true;
+    }
+
+    // запрос ушёл в async, afterCompletion в этом потоке не будет — он возвращается в пул чистым
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        STATEMENTS.remove();
+    }
+
+    // поток исполнителя, в котором выполняется тело async-запроса
+    @Override
+    public <T> void preProcess(NativeWebRequest request, Callable<T> task) {
+        int[] count = (int[]) request.getAttribute(COUNT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (count != null) STATEMENTS.set(count);
+    }
+
+    @Override
+    public <T> void postProcess(NativeWebRequest request, Callable<T> task, Object concurrentResult) {
+        STATEMENTS.remove();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        STATEMENTS.remove();
+        int[] count = (int[]) request.getAttribute(COUNT_ATTRIBUTE);
+        if (count == null) return;
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("http.server.requests.sql")
+                .description("SQL statements issued per request")
+                .tag("method", request.getMethod())
+                .tag("uri", (uri != null) ? uri.toString() : "UNKNOWN")
+                .publishPercentileHistogram()
+                .register(registry.getIfAvailable(() -> Metrics.globalRegistry))
+                .record(count[0]);
+    }
+}
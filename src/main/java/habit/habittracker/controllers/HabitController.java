@@ -1,23 +1,83 @@
 package habit.habittracker.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.CheckInResultDTO;
+import habit.habittracker.dto.CompletionBatchDTO;
 import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitHeatmapDTO;
+import habit.habittracker.dto.HabitPageDTO;
 import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.HabitStatsSummaryDTO;
 import habit.habittracker.models.Habit;
+import habit.habittracker.models.StreakEngine;
 import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/habits")
 public class HabitController {
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int EXPORT_FLUSH_EVERY = 100;
+
     private final HabitService habitService;
-    public HabitController(HabitService habitService) { this.habitService = habitService; }
+    private final HabitStatsQueryService habitStatsQueryService;
+    private final ObjectMapper objectMapper;
+    public HabitController(HabitService habitService, HabitStatsQueryService habitStatsQueryService,
+                           ObjectMapper objectMapper) {
+        this.habitService = habitService;
+        this.habitStatsQueryService = habitStatsQueryService;
+        this.objectMapper = objectMapper;
+    }
 
     @GetMapping
-    public List<HabitDTO> getAllHabits() { return habitService.getAllHabits(); }
+    public ResponseEntity<List<HabitDTO>> getAllHabits(@RequestParam(required = false) String after,
+                                                       @RequestParam(required = false) Integer limit,
+                                                       @RequestParam(required = false) String completedFrom,
+                                                       @RequestParam(required = false) String completedTo,
+                                                       @RequestParam(defaultValue = "false") boolean rolling,
+                                                       WebRequest request) {
+        LocalDate from = (completedFrom == null) ? null : LocalDate.parse(completedFrom);
+        LocalDate to = (completedTo == null) ? null : LocalDate.parse(completedTo);
+        // 304 по одним версиям: страница не читается и не сериализуется
+        if (request.checkNotModified(varyByAccept(habitService.getHabitsPageETag(after, limit, from, to, rolling), request))) return null;
+        HabitPageDTO page = habitService.getHabitsPage(after, limit, from, to);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        return response.body(rolling ? habitService.withRollingRates(page.getItems()) : page.getItems());
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public StreamingResponseBody exportHabits() {
+        ObjectWriter writer = objectMapper.writerFor(HabitDTO.class);
+        return out -> {
+            int[] written = {0};
+            habitService.exportHabits(habit -> {
+                try {
+                    out.write(writer.writeValueAsBytes(habit));
+                    out.write('\n');
+                    if (++written[0] % EXPORT_FLUSH_EVERY == 0) out.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            out.flush();
+        };
+    }
 
     @PostMapping
     public HabitDTO createHabit(@RequestBody HabitDTO habit) { return habitService.addHabit(habit); }
@@ -28,6 +88,23 @@ public class HabitController {
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteHabit(@PathVariable Long id) { habitService.deleteHabit(id); return ResponseEntity.noContent().build(); }
 
+    @PostMapping("/check-in")
+    public List<CheckInResultDTO> checkIn(@RequestBody List<CheckInDTO> entries) { return habitService.checkIn(entries); }
+
+    @GetMapping("/{id}/completions")
+    public List<LocalDate> getCompletions(@PathVariable Long id,
+                                          @RequestParam(required = false) String from,
+                                          @RequestParam(required = false) String to) {
+        return habitService.getCompletions(id,
+                (from == null) ? null : LocalDate.parse(from),
+                (to == null) ? null : LocalDate.parse(to));
+    }
+
+    @GetMapping("/{id}/heatmap")
+    public HabitHeatmapDTO heatmap(@PathVariable Long id, @RequestParam(required = false) Integer year) {
+        return habitService.getHeatmap(id, year);
+    }
+
     @PostMapping("/{id}/done")
     public HabitDTO markDone(@PathVariable Long id, @RequestParam(required = false) String date) {
         LocalDate d = (date == null) ? LocalDate.now() : LocalDate.parse(date);
@@ -40,6 +117,33 @@ public class HabitController {
         return habitService.toggleHabitDone(id, d);
     }
 
+    @PostMapping("/{id}/completions:batch")
+    public HabitDTO batchCompletions(@PathVariable Long id, @RequestBody CompletionBatchDTO batch) {
+        return habitService.applyCompletions(id, batch);
+    }
+
+    @GetMapping("/stats/summary")
+    public HabitStatsSummaryDTO statsSummary() { return habitStatsQueryService.getStatsSummary(); }
+
+    @GetMapping("/stats")
+    public Map<Long, HabitStatsDTO> statsBatch(@RequestParam List<Long> ids) { return habitStatsQueryService.getStats(ids); }
+
     @GetMapping("/{id}/stats")
-    public HabitStatsDTO stats(@PathVariable Long id) { return habitService.getStats(id); }
+    // streaks=daily — дни подряд по проекции habit_stats, streaks=weekly — недели, выполненные не меньше
+    // frequency раз (StreakEngine); правило текущей серии у обоих одно — StreakEngine.isCurrent
+    public HabitStatsDTO stats(@PathVariable Long id, @RequestParam(defaultValue = "daily") String streaks,
+                               WebRequest request) {
+        StreakEngine.Mode mode = StreakEngine.Mode.valueOf(streaks.toUpperCase());
+        if (request.checkNotModified(varyByAccept(habitService.getStatsETag(id, mode), request))) return null;
+        return (mode == StreakEngine.Mode.WEEKLY) ? habitService.getWeeklyStats(id) : habitService.getStats(id);
+    }
+
+    // Тело кодируется по Accept (JSON, CBOR, Smile), поэтому Accept входит в ETag, а Vary: Accept
+    // не даёт общему кэшу ответить на If-None-Match телом другого формата. Без Accept ETag прежний
+    private static String varyByAccept(String eTag, WebRequest request) {
+        ((ServletWebRequest) request).getResponse().addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        if (accept == null || accept.isBlank()) return eTag;
+        return eTag.substring(0, eTag.length() - 1) + "-" + Integer.toHexString(accept.hashCode()) + "\"";
+    }
 }
@@ -0,0 +1,20 @@
+package habit.habittracker.controllers;
+
+import habit.habittracker.dto.BulkImportResultDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.services.HabitImportService;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+// Отдельный контроллер: путь /habits:bulk не ложится под @RequestMapping("/habits")
+@RestController
+public class HabitImportController {
+    private final HabitImportService habitImportService;
+    public HabitImportController(HabitImportService habitImportService) { this.habitImportService = habitImportService; }
+
+    @PostMapping("/habits:bulk")
+    public BulkImportResultDTO importHabits(@RequestBody List<HabitDTO> habits) { return habitImportService.importHabits(habits); }
+}
@@ -0,0 +1,19 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkImportResultDTO {
+    private int imported;
+    private List<Long> ids;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
@@ -0,0 +1,18 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CheckInDTO {
+    private Long habitId;
+    private LocalDate date;   // null — сегодня
+    private Boolean done;     // null — true
+}
@@ -0,0 +1,28 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CheckInResultDTO {
+    private Long habitId;
+    private LocalDate date;
+    private boolean done;
+    private boolean success;
+    private String error;
+
+    public static CheckInResultDTO ok(Long habitId, LocalDate date, boolean done) {
+        return new CheckInResultDTO(habitId, date, done, true, null);
+    }
+
+    public static CheckInResultDTO failed(Long habitId, LocalDate date, boolean done, String error) {
+        return new CheckInResultDTO(habitId, date, done, false, error);
+    }
+}
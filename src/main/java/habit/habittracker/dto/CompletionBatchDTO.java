@@ -0,0 +1,18 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class CompletionBatchDTO {
+    private Set<LocalDate> add;
+    private Set<LocalDate> remove;
+}
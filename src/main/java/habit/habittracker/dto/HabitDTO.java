@@ -11,7 +11,6 @@ import org.springframework.data.annotation.CreatedDate;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
 import java.util.List;
 @Getter
 @Setter
@@ -25,15 +24,27 @@ public class HabitDTO {
     private Integer frequency;
     private LocalDateTime createdAt;
     private List<LocalDate> completedDates;
+    // только по GET /habits?rolling=true
+    private RollingRatesDTO rolling;
+
+    public HabitDTO(Long id, String title, String description, Integer frequency, LocalDateTime createdAt,
+                    List<LocalDate> completedDates) {
+        this(id, title, description, frequency, createdAt, completedDates, null);
+    }
 
     public static HabitDTO fromEntity(Habit habit) {
+        return fromEntity(habit, habit.getCompletions().toDates()); // разворачиваем битовые маски в список дат
+    }
+
+    // отметки переданы отдельно (например, только за окно дат) — коллекция сущности не трогается
+    public static HabitDTO fromEntity(Habit habit, List<LocalDate> completedDates) {
         return new HabitDTO(
                 habit.getId(),
                 habit.getTitle(),
                 habit.getDescription(),
                 habit.getFrequency(),
                 habit.getCreatedAt(),
-                new ArrayList<>(habit.getCompletedDates()) // Копируем коллекцию
+                completedDates
         );
     }
 }
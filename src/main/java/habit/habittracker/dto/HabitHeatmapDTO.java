@@ -0,0 +1,21 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Год привычки для тепловой карты. days — base64 битового блока года: день года N (с единицы)
+// лежит в байте (N-1)/8, бит (N-1)%8 от младшего. monthly — число отметок по месяцам.
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HabitHeatmapDTO {
+    private Long habitId;
+    private int year;
+    private int daysInYear;
+    private String days;
+    private int total;
+    private int[] monthly;
+}
@@ -0,0 +1,35 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HabitPageDTO {
+    private List<HabitDTO> items;
+    private String nextCursor;
+
+    // Курсор непрозрачен для клиента: это base64url от id последней привычки на странице
+    public static String encodeCursor(Long lastId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(("id:" + lastId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static Long decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            if (!raw.startsWith("id:")) throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            return Long.parseLong(raw.substring(3));
+        } catch (IllegalArgumentException e) { // NumberFormatException тоже сюда
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+    }
+}
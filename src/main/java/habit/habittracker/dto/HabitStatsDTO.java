@@ -15,5 +15,10 @@ public class HabitStatsDTO {
     private double successRate;
     private int currentStreak;
     private int longestStreak;
+    // только у GET /habits/{id}/stats; null в JSON не попадает
+    private RollingRatesDTO rolling;
 
+    public HabitStatsDTO(Long habitId, int totalDone, double successRate, int currentStreak, int longestStreak) {
+        this(habitId, totalDone, successRate, currentStreak, longestStreak, null);
+    }
 }
\ No newline at end of file
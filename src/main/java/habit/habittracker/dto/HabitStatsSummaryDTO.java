@@ -0,0 +1,19 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HabitStatsSummaryDTO {
+    // сумма выполнений к сумме ожидаемых по всем привычкам, в процентах
+    private double successRate;
+    private int doneToday;
+    private List<HabitSummaryDTO> habits;
+}
@@ -0,0 +1,20 @@
+package habit.habittracker.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// Строка сводки по привычке: то же, что HabitStatsDTO, плюс отметка за сегодня
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class HabitSummaryDTO {
+    private Long habitId;
+    private int totalDone;
+    private double successRate;
+    private int currentStreak;
+    private int longestStreak;
+    private boolean doneToday;
+}
@@ -0,0 +1,33 @@
+package habit.habittracker.dto;
+
+import habit.habittracker.models.HabitStats;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Доля выполнения (в процентах) за последние 7/30/90/365 дней, включая сегодня
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@EqualsAndHashCode
+public class RollingRatesDTO {
+    private double last7;
+    private double last30;
+    private double last90;
+    private double last365;
+
+    // counts — в порядке HabitStats.ROLLING_WINDOWS
+    public static RollingRatesDTO of(int[] counts, LocalDateTime createdAt, Integer frequency, LocalDate today) {
+        double[] rates = new double[counts.length];
+        for (int i = 0; i < counts.length; i++) {
+            rates[i] = HabitStats.rollingRate(counts[i], HabitStats.ROLLING_WINDOWS[i], createdAt, frequency, today);
+        }
+        return new RollingRatesDTO(rates[0], rates[1], rates[2], rates[3]);
+    }
+}
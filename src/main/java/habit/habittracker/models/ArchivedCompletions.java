@@ -0,0 +1,112 @@
+package habit.habittracker.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+// Архив старых лет привычки: одна строка на привычку, годовые битовые блоки сжаты одним deflate-блоком.
+// Горячая таблица habit_completion_years после свёртки хранит только последние годы.
+// Формат до сжатия: число лет, затем (год, BYTES_PER_YEAR байт) по возрастанию; пустые годы не пишутся.
+@Entity
+@Table(name = "habit_completion_archive")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ArchivedCompletions {
+    public static final int MAX_BLOCK_BYTES = 1 << 20;
+    // столько последних лет никогда не сворачивается: текущий год и скользящие окна (до года назад)
+    // читаются только из горячей таблицы
+    public static final int MIN_HOT_YEARS = 2;
+
+    @Id
+    private Long habitId;
+    private int firstYear;
+    private int lastYear;
+    @Column(name = "days", length = MAX_BLOCK_BYTES)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private byte[] days;
+
+    // год мог попасть в архив, если он старше MIN_HOT_YEARS последних лет
+    public static boolean mayHold(int year, LocalDate today) {
+        return year <= today.getYear() - MIN_HOT_YEARS;
+    }
+
+    // null — после свёртки не осталось ни одного непустого года
+    public static ArchivedCompletions of(Long habitId, SortedMap<Integer, byte[]> years) {
+        SortedMap<Integer, byte[]> nonEmpty = new TreeMap<>();
+        years.forEach((year, bits) -> {
+            if (CompletionSet.countDays(bits, 0, CompletionSet.DAYS_PER_YEAR) > 0) nonEmpty.put(year, bits);
+        });
+        if (nonEmpty.isEmpty()) return null;
+        ArchivedCompletions archive = new ArchivedCompletions();
+        archive.habitId = habitId;
+        archive.firstYear = nonEmpty.firstKey();
+        archive.lastYear = nonEmpty.lastKey();
+        archive.days = pack(nonEmpty);
+        return archive;
+    }
+
+    public SortedMap<Integer, byte[]> years() {
+        SortedMap<Integer, byte[]> years = new TreeMap<>();
+        try (DataInputStream in = new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(days)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                int year = in.readInt();
+                byte[] bits = new byte[CompletionSet.BYTES_PER_YEAR];
+                in.readFully(bits);
+                years.put(year, bits);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupted completion archive of habit " + habitId, e);
+        }
+        return years;
+    }
+
+    // Подкладывает архивные годы под уже прочитанные горячие; у привычки без горячих лет — одни архивные
+    public static void layer(Map<Long, CompletionSet> completions, Collection<ArchivedCompletions> archives) {
+        for (ArchivedCompletions archive : archives) {
+            SortedMap<Integer, byte[]> years = archive.years();
+            completions.merge(archive.getHabitId(), new CompletionSet(new TreeMap<>(), years),
+                    (hot, ignored) -> hot.withArchived(years));
+        }
+    }
+
+    private static byte[] pack(SortedMap<Integer, byte[]> years) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        // свой Deflater поток не закрывает — нативную память отпускаем сами
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater))) {
+            out.writeInt(years.size());
+            for (Map.Entry<Integer, byte[]> year : years.entrySet()) {
+                out.writeInt(year.getKey());
+                out.write(year.getValue(), 0, CompletionSet.BYTES_PER_YEAR);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+}
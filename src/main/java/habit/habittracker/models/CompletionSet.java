@@ -0,0 +1,191 @@
+package habit.habittracker.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Множество дней выполнения привычки: по одному битовому блоку на год (бит = день года).
+// Оборачивает карту "год -> биты" как есть, поэтому изменения пишутся прямо в неё.
+// Под ней может лежать слой архивных лет (habit_completion_archive) только для чтения: горячий блок
+// того же года его перекрывает, правка архивного года пишется горячим блоком.
+public class CompletionSet {
+    public static final int DAYS_PER_YEAR = 366;
+    public static final int BYTES_PER_YEAR = (DAYS_PER_YEAR + 7) / 8;
+
+    private final SortedMap<Integer, byte[]> years;
+    private final SortedMap<Integer, byte[]> archived;
+
+    public CompletionSet() {
+        this(new TreeMap<>());
+    }
+
+    public CompletionSet(SortedMap<Integer, byte[]> years) {
+        this(years, Collections.emptySortedMap());
+    }
+
+    public CompletionSet(SortedMap<Integer, byte[]> years, SortedMap<Integer, byte[]> archived) {
+        this.years = years;
+        this.archived = archived;
+    }
+
+    // те же горячие годы поверх архивных
+    public CompletionSet withArchived(SortedMap<Integer, byte[]> archived) {
+        return new CompletionSet(years, archived);
+    }
+
+    public static CompletionSet of(Collection<LocalDate> dates) {
+        CompletionSet set = new CompletionSet();
+        if (dates != null) dates.forEach(set::add);
+        return set;
+    }
+
+    public boolean contains(LocalDate date) {
+        byte[] bits = bits(date.getYear());
+        return bits != null && isSet(bits, date.getDayOfYear() - 1);
+    }
+
+    public boolean add(LocalDate date) {
+        byte[] bits = bits(date.getYear());
+        byte[] updated = withDay(bits, date, true);
+        if (updated == bits) return false;
+        years.put(date.getYear(), updated);
+        return true;
+    }
+
+    public boolean remove(LocalDate date) {
+        byte[] bits = bits(date.getYear());
+        byte[] updated = withDay(bits, date, false);
+        if (updated == bits) return false;
+        // опустевший архивный год перекрываем нулевым блоком, иначе снова проступит архив
+        if (updated == null && archived.containsKey(date.getYear())) years.put(date.getYear(), new byte[BYTES_PER_YEAR]);
+        else if (updated == null) years.remove(date.getYear());
+        else years.put(date.getYear(), updated);
+        return true;
+    }
+
+    // Правка одного годового блока. Возвращает тот же массив, если день уже в нужном состоянии,
+    // и null, если год опустел. Всегда новый массив, а не правка на месте: так Hibernate
+    // гарантированно видит изменённую строку.
+    public static byte[] withDay(byte[] bits, LocalDate date, boolean done) {
+        int day = date.getDayOfYear() - 1;
+        boolean set = bits != null && isSet(bits, day);
+        if (set == done) return bits;
+        byte[] updated = (bits == null) ? new byte[BYTES_PER_YEAR] : bits.clone();
+        if (done) updated[day >> 3] |= (byte) (1 << (day & 7));
+        else updated[day >> 3] &= (byte) ~(1 << (day & 7));
+        return (!done && countBits(updated) == 0) ? null : updated;
+    }
+
+    public int size() {
+        int total = 0;
+        for (byte[] bits : all().values()) total += countBits(bits);
+        return total;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // Даты по возрастанию: годы в карте отсортированы, биты внутри года идут по порядку дней
+    public List<LocalDate> toDates() {
+        List<LocalDate> dates = new ArrayList<>(size());
+        for (Map.Entry<Integer, byte[]> year : all().entrySet()) {
+            byte[] bits = year.getValue();
+            int daysInYear = LocalDate.of(year.getKey(), 1, 1).lengthOfYear();
+            for (int day = 0; day < daysInYear; day++) {
+                if (isSet(bits, day)) dates.add(LocalDate.ofYearDay(year.getKey(), day + 1));
+            }
+        }
+        return dates;
+    }
+
+    // Даты в [from, to] включительно, по возрастанию; перебираются только годы окна
+    public List<LocalDate> toDates(LocalDate from, LocalDate to) {
+        List<LocalDate> dates = new ArrayList<>();
+        if (from.isAfter(to)) return dates;
+        for (Map.Entry<Integer, byte[]> year : all().subMap(from.getYear(), to.getYear() + 1).entrySet()) {
+            byte[] bits = year.getValue();
+            int first = (year.getKey() == from.getYear()) ? from.getDayOfYear() - 1 : 0;
+            int last = (year.getKey() == to.getYear())
+                    ? to.getDayOfYear() - 1
+                    : LocalDate.of(year.getKey(), 1, 1).lengthOfYear() - 1;
+            for (int day = first; day <= last; day++) {
+                if (isSet(bits, day)) dates.add(LocalDate.ofYearDay(year.getKey(), day + 1));
+            }
+        }
+        return dates;
+    }
+
+    // число отметок в [from, to] включительно; читаются только биты окна
+    public int count(LocalDate from, LocalDate to) {
+        int total = 0;
+        if (from.isAfter(to)) return total;
+        for (Map.Entry<Integer, byte[]> year : all().subMap(from.getYear(), to.getYear() + 1).entrySet()) {
+            int first = (year.getKey() == from.getYear()) ? from.getDayOfYear() - 1 : 0;
+            int end = (year.getKey() == to.getYear()) ? to.getDayOfYear() : DAYS_PER_YEAR;
+            total += countDays(year.getValue(), first, end);
+        }
+        return total;
+    }
+
+    // Дни от эпохи по возрастанию. Пустые байты пропускаются целиком, LocalDate — один на год
+    public int[] toEpochDays() {
+        int[] days = new int[size()];
+        int count = 0;
+        for (Map.Entry<Integer, byte[]> year : all().entrySet()) {
+            byte[] bits = year.getValue();
+            int first = (int) LocalDate.of(year.getKey(), 1, 1).toEpochDay();
+            for (int i = 0; i < bits.length; i++) {
+                int b = bits[i] & 0xFF;
+                while (b != 0) {
+                    days[count++] = first + (i << 3) + Integer.numberOfTrailingZeros(b);
+                    b &= b - 1;
+                }
+            }
+        }
+        return days;
+    }
+
+    // отметка дня прямо в годовом блоке, без обёртки над картой
+    public static boolean contains(byte[] bits, LocalDate date) {
+        return bits != null && isSet(bits, date.getDayOfYear() - 1);
+    }
+
+    // число отмеченных дней года в [fromDay, toDay) — дни считаются от нуля, как биты блока
+    public static int countDays(byte[] bits, int fromDay, int toDay) {
+        if (bits == null) return 0;
+        int count = 0;
+        for (int day = fromDay; day < toDay; day++) {
+            if (isSet(bits, day)) count++;
+        }
+        return count;
+    }
+
+    private byte[] bits(int year) {
+        byte[] bits = years.get(year);
+        return (bits != null) ? bits : archived.get(year);
+    }
+
+    // горячие годы поверх архивных; без архива — сама карта, без копии
+    private SortedMap<Integer, byte[]> all() {
+        if (archived.isEmpty()) return years;
+        SortedMap<Integer, byte[]> all = new TreeMap<>(archived);
+        all.putAll(years);
+        return all;
+    }
+
+    private static boolean isSet(byte[] bits, int day) {
+        return (bits[day >> 3] & (1 << (day & 7))) != 0;
+    }
+
+    private static int countBits(byte[] bits) {
+        int count = 0;
+        for (byte b : bits) count += Integer.bitCount(b & 0xFF);
+        return count;
+    }
+}
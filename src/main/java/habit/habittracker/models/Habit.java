@@ -1,38 +1,97 @@
 package habit.habittracker.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import habit.habittracker.dto.HabitDTO;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.SortNatural;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.OffsetDateTime;
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
 
 @Entity
 @Table(name = "habits")
 @Getter
 @Setter
-@AllArgsConstructor
 @NoArgsConstructor
 @EqualsAndHashCode
 @EntityListeners(AuditingEntityListener.class)
 public class Habit {
+    // пул из sequence вместо IDENTITY: иначе Hibernate не может пакетировать вставки
+    public static final String ID_SEQUENCE = "habits_seq";
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = ID_SEQUENCE)
+    @SequenceGenerator(name = ID_SEQUENCE, sequenceName = ID_SEQUENCE, allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
     private String title;
     private String description;
     private Integer frequency;
     @CreatedDate
     private LocalDateTime createdAt;
+    // растёт при любом изменении, в том числе отметок; параллельная запись со старой версией откатывается
+    @Version
+    @ColumnDefault("0")
+    @EqualsAndHashCode.Exclude
+    private long version;
+    // последний год, который компактор мог свернуть в habit_completion_archive; null — архива нет
+    // и полная история лежит в completionYears. Годы после него всегда горячие
+    @EqualsAndHashCode.Exclude
+    private Integer archivedThrough;
+    // одна строка на (habit_id, год): 46 байт битовой маски вместо строки на каждый день
     @ElementCollection
-    @CollectionTable(name = "habit_completions", joinColumns = @JoinColumn(name = "habit_id"))
-    @Column(name = "done_date")
-    private List<LocalDate> completedDates = new ArrayList<>();
+    // одна строка на (привычка, год) — уникальность держит сама БД, запись по ключу на неё опирается
+    @CollectionTable(name = "habit_completion_years", joinColumns = @JoinColumn(name = "habit_id"),
+            uniqueConstraints = @UniqueConstraint(name = "uk_habit_completion_year",
+                    columnNames = {"habit_id", "completion_year"}))
+    @MapKeyColumn(name = "completion_year")
+    @Column(name = "days", length = CompletionSet.BYTES_PER_YEAR)
+    @SortNatural
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    private SortedMap<Integer, byte[]> completionYears = new TreeMap<>();
+
+    public Habit(Long id, String title, String description, Integer frequency, LocalDateTime createdAt,
+                 Collection<LocalDate> completedDates) {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.frequency = frequency;
+        this.createdAt = createdAt;
+        setCompletedDates(completedDates);
+    }
+
+    // только горячие годы; полную историю архивированной привычки даёт getCompletions(archived)
+    @JsonIgnore
+    public CompletionSet getCompletions() {
+        return new CompletionSet(completionYears);
+    }
+
+    public CompletionSet getCompletions(ArchivedCompletions archived) {
+        CompletionSet completions = getCompletions();
+        return (archived == null) ? completions : completions.withArchived(archived.years());
+    }
+
+    public List<LocalDate> getCompletedDates() {
+        return getCompletions().toDates();
+    }
+
+    public void setCompletedDates(Collection<LocalDate> completedDates) {
+        completionYears.clear();
+        if (completedDates != null) {
+            CompletionSet completions = getCompletions();
+            completedDates.forEach(completions::add);
+        }
+    }
 
     public static Habit fromDto(HabitDTO habitDto) {
         var habit =new Habit();
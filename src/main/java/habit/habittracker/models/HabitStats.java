@@ -0,0 +1,232 @@
+package habit.habittracker.models;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Проекция статистики привычки, которую markHabitDone/toggleHabitDone обновляют по месту.
+// Последняя серия хранится отрезком [currentStreakStart, lastCompletion], поэтому текущая серия
+// на любую дату считается без чтения отметок.
+// Счётчики скользящих окон (ROLLING_WINDOWS дней, заканчивая rollingAsOf) правятся теми же
+// записями; на новый день их сдвигает advanceRolling при первом чтении.
+// UPDATE пишет только изменённые столбцы: сдвиг окон при чтении не перезаписывает счётчики серий.
+@Entity
+@Table(name = "habit_stats")
+@DynamicUpdate
+@Getter
+@Setter
+@NoArgsConstructor
+public class HabitStats {
+    public static final int[] ROLLING_WINDOWS = {7, 30, 90, 365};
+    public static final int MAX_ROLLING_WINDOW = 365;
+
+    @Id
+    private Long habitId;
+    private int totalDone;
+    private int longestStreak;
+    private LocalDate currentStreakStart;
+    private LocalDate lastCompletion;
+    // null — окна ещё не посчитаны; rebuildFrom их не трогает
+    private LocalDate rollingAsOf;
+    @ColumnDefault("0")
+    private int rolling7;
+    @ColumnDefault("0")
+    private int rolling30;
+    @ColumnDefault("0")
+    private int rolling90;
+    @ColumnDefault("0")
+    private int rolling365;
+
+    public HabitStats(Long habitId, int totalDone, int longestStreak, LocalDate currentStreakStart, LocalDate lastCompletion) {
+        this.habitId = habitId;
+        this.totalDone = totalDone;
+        this.longestStreak = longestStreak;
+        this.currentStreakStart = currentStreakStart;
+        this.lastCompletion = lastCompletion;
+    }
+
+    public static HabitStats of(Long habitId, CompletionSet completions) {
+        HabitStats stats = new HabitStats();
+        stats.setHabitId(habitId);
+        stats.rebuildFrom(completions);
+        return stats;
+    }
+
+    // Полный пересчёт за один проход по отсортированным дням от эпохи, даты создаются только в конце
+    public void rebuildFrom(CompletionSet completions) {
+        int[] days = completions.toEpochDays();
+        totalDone = days.length;
+        longestStreak = 0;
+        currentStreakStart = null;
+        lastCompletion = null;
+        if (days.length == 0) return;
+        int start = days[0];
+        for (int i = 1; i < days.length; i++) {
+            if (days[i] != days[i - 1] + 1) {
+                longestStreak = Math.max(longestStreak, days[i - 1] - start + 1);
+                start = days[i];
+            }
+        }
+        int last = days[days.length - 1];
+        longestStreak = Math.max(longestStreak, last - start + 1);
+        currentStreakStart = LocalDate.ofEpochDay(start);
+        lastCompletion = LocalDate.ofEpochDay(last);
+    }
+
+    // Обновление без чтения отметок. false — отметка задним числом, для неё нужны сами отметки
+    public boolean tryRecordAdded(LocalDate date) {
+        if (lastCompletion != null && !date.isAfter(lastCompletion)) return false;
+        totalDone++;
+        shiftRolling(date, 1);
+        if (lastCompletion == null || date.isAfter(lastCompletion.plusDays(1))) {
+            currentStreakStart = date;
+            longestStreak = Math.max(longestStreak, 1);
+        } else {
+            longestStreak = Math.max(longestStreak, length(currentStreakStart, date));
+        }
+        lastCompletion = date;
+        return true;
+    }
+
+    // completions уже содержит date
+    public void recordAdded(LocalDate date, CompletionSet completions) {
+        if (tryRecordAdded(date)) return;
+        totalDone++;
+        shiftRolling(date, 1);
+        // отметка задним числом: находим серию, в которую она попала (она могла склеить две серии)
+        LocalDate from = date;
+        while (completions.contains(from.minusDays(1))) from = from.minusDays(1);
+        LocalDate to = date;
+        while (completions.contains(to.plusDays(1))) {
+            if (to.plusDays(1).isEqual(currentStreakStart)) {
+                to = lastCompletion;
+                break;
+            }
+            to = to.plusDays(1);
+        }
+        longestStreak = Math.max(longestStreak, length(from, to));
+        if (to.isEqual(lastCompletion)) currentStreakStart = from;
+    }
+
+    // Снятие отметки без чтения отметок. false — дата в старой серии, либо серия могла быть
+    // самой длинной, либо снимается единственная последняя отметка
+    public boolean tryRecordRemoved(LocalDate date) {
+        if (totalDone == 1) {
+            shiftRolling(date, -1);
+            totalDone = 0;
+            longestStreak = 0;
+            currentStreakStart = null;
+            lastCompletion = null;
+            return true;
+        }
+        if (date.isBefore(currentStreakStart)
+                || length(currentStreakStart, lastCompletion) >= longestStreak
+                || currentStreakStart.isEqual(lastCompletion)) {
+            return false;
+        }
+        totalDone--;
+        shiftRolling(date, -1);
+        if (date.isEqual(lastCompletion)) lastCompletion = date.minusDays(1);
+        else currentStreakStart = date.plusDays(1);
+        return true;
+    }
+
+    // completions уже не содержит date. Пересборка нужна, только если серия с этой датой
+    // могла быть самой длинной или снимается единственная последняя отметка.
+    public void recordRemoved(LocalDate date, CompletionSet completions) {
+        if (tryRecordRemoved(date)) return;
+        totalDone--;
+        shiftRolling(date, -1);
+        if (!date.isBefore(currentStreakStart)) {
+            rebuildFrom(completions);
+            return;
+        }
+        LocalDate from = date;
+        while (completions.contains(from.minusDays(1))) from = from.minusDays(1);
+        LocalDate to = date;
+        while (completions.contains(to.plusDays(1))) to = to.plusDays(1);
+        if (length(from, to) >= longestStreak) rebuildFrom(completions);
+    }
+
+    // Серия, включающая today, или вчерашняя, если сегодня ещё не отмечено (StreakEngine.isCurrent).
+    // Разбор по отметкам нужен только когда есть отметки "в будущем" и today лежит раньше последней серии.
+    public int currentStreak(LocalDate today, CompletionSet completions) {
+        if (lastCompletion == null) return 0;
+        if (today.isAfter(lastCompletion)) {
+            return StreakEngine.isCurrent(lastCompletion.toEpochDay(), today.toEpochDay())
+                    ? length(currentStreakStart, lastCompletion) : 0;
+        }
+        if (!currentStreakNeedsCompletions(today)) return length(currentStreakStart, today);
+        int streak = 0;
+        LocalDate end = completions.contains(today) ? today : today.minusDays(1);
+        for (LocalDate pointer = end; completions.contains(pointer); pointer = pointer.minusDays(1)) streak++;
+        return streak;
+    }
+
+    public boolean currentStreakNeedsCompletions(LocalDate today) {
+        return lastCompletion != null && !today.isAfter(lastCompletion) && today.isBefore(currentStreakStart);
+    }
+
+    public boolean rollingNeedsAdvance(LocalDate today) {
+        return rollingAsOf == null || !rollingAsOf.isEqual(today);
+    }
+
+    // Окна на today заново по отметкам последних MAX_ROLLING_WINDOW дней — это блоки одного-двух лет
+    public void advanceRolling(LocalDate today, CompletionSet recent) {
+        rolling7 = recent.count(today.minusDays(6), today);
+        rolling30 = recent.count(today.minusDays(29), today);
+        rolling90 = recent.count(today.minusDays(89), today);
+        rolling365 = recent.count(today.minusDays(MAX_ROLLING_WINDOW - 1), today);
+        rollingAsOf = today;
+    }
+
+    // в порядке ROLLING_WINDOWS
+    public int[] rollingCounts() {
+        return new int[]{rolling7, rolling30, rolling90, rolling365};
+    }
+
+    // доля выполнения в окне: ожидание считается с начала окна или с создания, если оно позже
+    public static double rollingRate(int done, int windowDays, LocalDateTime createdAt, Integer frequency, LocalDate today) {
+        LocalDateTime windowStart = today.minusDays(windowDays - 1).atStartOfDay();
+        LocalDateTime from = (createdAt != null && createdAt.isAfter(windowStart)) ? createdAt : windowStart;
+        return successRate(done, idealCompletions(from, frequency, today));
+    }
+
+    // сколько выполнений ожидалось с момента создания при заданной частоте в неделю
+    public static double idealCompletions(LocalDateTime createdAt, Integer frequency, LocalDate today) {
+        LocalDate createdAtDate = (createdAt != null) ? createdAt.toLocalDate() : today;
+        int perWeek = (frequency != null && frequency > 0) ? frequency : 1;
+        long lifetimeDays = ChronoUnit.DAYS.between(createdAtDate, today) + 1;
+        return (lifetimeDays / 7.0) * perWeek;
+    }
+
+    public static double successRate(long total, double idealCompletions) {
+        return idealCompletions > 0
+                ? Math.min(100.0, (total * 100.0 / idealCompletions))
+                : 0.0;
+    }
+
+    // отметка date появилась (+1) или снята (-1): правим окна, в которые она попадает на rollingAsOf
+    private void shiftRolling(LocalDate date, int delta) {
+        if (rollingAsOf == null) return;
+        long age = ChronoUnit.DAYS.between(date, rollingAsOf);
+        if (age < 0 || age >= MAX_ROLLING_WINDOW) return;
+        rolling365 += delta;
+        if (age < 90) rolling90 += delta;
+        if (age < 30) rolling30 += delta;
+        if (age < 7) rolling7 += delta;
+    }
+
+    private static int length(LocalDate from, LocalDate to) {
+        return (int) ChronoUnit.DAYS.between(from, to) + 1;
+    }
+}
@@ -0,0 +1,61 @@
+package habit.habittracker.models;
+
+// Серии и доля выполнения за один проход по отсортированному массиву дней от эпохи (без LocalDate).
+// DAILY — серия из дней подряд; WEEKLY — серия из недель (с понедельника), в которых набрано
+// не меньше frequency отметок. Незавершённый период (сегодня ещё не отмечено, неделя ещё не
+// добрала цель) текущую серию не обрывает — то же правило isCurrent у проекции HabitStats, по которой
+// отвечает streaks=daily. Отметки позже today не учитываются.
+public final class StreakEngine {
+    public enum Mode { DAILY, WEEKLY }
+
+    public record Result(int totalDone, int longestStreak, int currentStreak, double successRate) {
+    }
+
+    private StreakEngine() {
+    }
+
+    public static Result evaluate(int[] epochDays, Mode mode, Integer frequency, long createdEpochDay, long todayEpochDay) {
+        int perWeek = (frequency != null && frequency > 0) ? Math.min(frequency, 7) : 1;
+        int total = 0;
+        int longest = 0;
+        int run = 0;
+        long lastPeriod = Long.MIN_VALUE;   // последний засчитанный период (день или неделя)
+        long period = Long.MIN_VALUE;       // неделя, в которой сейчас копятся отметки
+        int inPeriod = 0;
+        int previous = Integer.MIN_VALUE;
+        for (int day : epochDays) {
+            if (day > todayEpochDay) break;
+            if (day == previous) continue;
+            previous = day;
+            total++;
+            long current = (mode == Mode.DAILY) ? day : week(day);
+            if (current != period) {
+                period = current;
+                inPeriod = 0;
+            }
+            // период засчитывается на той отметке, которой он набрал цель
+            if (++inPeriod == ((mode == Mode.DAILY) ? 1 : perWeek)) {
+                run = (lastPeriod == current - 1) ? run + 1 : 1;
+                lastPeriod = current;
+                longest = Math.max(longest, run);
+            }
+        }
+        long now = (mode == Mode.DAILY) ? todayEpochDay : week(todayEpochDay);
+        int currentStreak = isCurrent(lastPeriod, now) ? run : 0;
+
+        long lifetimeDays = Math.max(todayEpochDay - Math.min(createdEpochDay, todayEpochDay) + 1, 1);
+        double ideal = (lifetimeDays / 7.0) * perWeek;
+        return new Result(total, longest, currentStreak, HabitStats.successRate(total, ideal));
+    }
+
+    // Серия, последний засчитанный период которой — текущий или предыдущий, ещё текущая:
+    // сегодняшний день (неделя) не закрыт, пока не наступил следующий
+    public static boolean isCurrent(long lastPeriod, long nowPeriod) {
+        return lastPeriod == nowPeriod || lastPeriod == nowPeriod - 1;
+    }
+
+    // номер недели с понедельника: день 0 эпохи — четверг
+    static long week(long epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+}
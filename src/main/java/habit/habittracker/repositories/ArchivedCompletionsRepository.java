@@ -0,0 +1,9 @@
+package habit.habittracker.repositories;
+
+import habit.habittracker.models.ArchivedCompletions;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ArchivedCompletionsRepository extends JpaRepository<ArchivedCompletions, Long> {
+}
@@ -1,9 +1,142 @@
 package habit.habittracker.repositories;
 
+import habit.habittracker.models.CompletionSet;
 import habit.habittracker.models.Habit;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
 @Repository
 public interface HabitRepository extends JpaRepository<Habit, Long> {
+
+    // списочные чтения тянут годовые маски тем же запросом, без lazy SELECT на каждую привычку
+    @Override
+    @EntityGraph(attributePaths = "completionYears")
+    List<Habit> findAll();
+
+    @Override
+    @EntityGraph(attributePaths = "completionYears")
+    List<Habit> findAllById(Iterable<Long> ids);
+
+    // отметки для уже выбранной страницы; LIMIT вместе с fetch join коллекции Hibernate делал бы в памяти
+    @EntityGraph(attributePaths = "completionYears")
+    List<Habit> findWithCompletionsByIdIn(Collection<Long> ids);
+
+    // keyset-пагинация: seek по первичному ключу вместо OFFSET/findAll
+    List<Habit> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    // версии той же страницы и одной привычки для условных GET: закрытая проекция, select только id и version
+    List<HabitVersionView> findVersionsByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+
+    Optional<HabitVersionView> findVersionById(Long id);
+
+    List<HabitVersionView> findVersionsByIdIn(Collection<Long> ids);
+
+    // курсор по всей таблице для выгрузки; вызывать только внутри транзакции и закрывать поток
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<Habit> streamAllByOrderByIdAsc();
+
+    // Сводка по всем привычкам одним запросом: скалярные поля, без сущностей и их коллекций
+    @Query("select h.id as habitId, h.frequency as frequency, h.createdAt as createdAt,"
+            + " s.totalDone as totalDone, s.longestStreak as longestStreak,"
+            + " s.currentStreakStart as currentStreakStart, s.lastCompletion as lastCompletion,"
+            + " value(y) as yearDays, h.archivedThrough as archivedThrough, h.version as version"
+            + " from Habit h"
+            + " left join HabitStats s on s.habitId = h.id"
+            + " left join h.completionYears y on key(y) = :year"
+            + " order by h.id")
+    List<HabitSummaryView> findSummary(@Param("year") int year);
+
+    @Query("select h.id as habitId, h.frequency as frequency, h.createdAt as createdAt,"
+            + " s.totalDone as totalDone, s.longestStreak as longestStreak,"
+            + " s.currentStreakStart as currentStreakStart, s.lastCompletion as lastCompletion,"
+            + " value(y) as yearDays, h.archivedThrough as archivedThrough, h.version as version"
+            + " from Habit h"
+            + " left join HabitStats s on s.habitId = h.id"
+            + " left join h.completionYears y on key(y) = :year"
+            + " where h.id in :ids")
+    List<HabitSummaryView> findSummaryByIdIn(@Param("ids") Collection<Long> ids, @Param("year") int year);
+
+    @Query("select h.id from Habit h where h.id in :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    @Modifying(flushAutomatically = true)
+    @Query("update Habit h set h.version = h.version + 1 where h.id in :ids")
+    int incrementVersions(@Param("ids") Collection<Long> ids);
+
+    // Запись отметки по ключу (habit_id, год): трогает одну строку и не поднимает коллекцию привычки.
+    // Контекст персистентности в обход — уже загруженные completionYears после этого устаревают.
+    @Query(value = "SELECT days FROM habit_completion_years WHERE habit_id = :habitId AND completion_year = :year",
+            nativeQuery = true)
+    List<byte[]> findCompletionYear(@Param("habitId") Long habitId, @Param("year") int year);
+
+    // Годовые строки окна [fromYear, toYear] для набора привычек — диапазон по ключу (habit_id, completion_year),
+    // сколько бы лет истории ни было у привычки. Столбцы: habit_id, completion_year, days.
+    @Query(value = "SELECT habit_id, completion_year, days FROM habit_completion_years"
+            + " WHERE habit_id IN (:habitIds) AND completion_year BETWEEN :fromYear AND :toYear",
+            nativeQuery = true)
+    List<Object[]> findCompletionYears(@Param("habitIds") Collection<Long> habitIds,
+                                       @Param("fromYear") int fromYear, @Param("toYear") int toYear);
+
+    // Отметки нескольких привычек за окно [from, to], собранные из годовых строк одним запросом
+    default Map<Long, CompletionSet> loadCompletions(Collection<Long> habitIds, LocalDate from, LocalDate to) {
+        Map<Long, SortedMap<Integer, byte[]>> years = new HashMap<>();
+        for (Object[] row : findCompletionYears(habitIds, from.getYear(), to.getYear())) {
+            years.computeIfAbsent(((Number) row[0]).longValue(), habitId -> new TreeMap<>())
+                    .put(((Number) row[1]).intValue(), (byte[]) row[2]);
+        }
+        Map<Long, CompletionSet> completions = new HashMap<>();
+        years.forEach((habitId, habitYears) -> completions.put(habitId, new CompletionSet(habitYears)));
+        return completions;
+    }
+
+    // Привычки с горячими годами раньше beforeYear — кандидаты в архив; keyset по habit_id
+    @Query(value = "SELECT DISTINCT habit_id FROM habit_completion_years"
+            + " WHERE habit_id > :afterId AND completion_year < :beforeYear ORDER BY habit_id LIMIT :limit",
+            nativeQuery = true)
+    List<Long> findIdsWithCompletionYearsBefore(@Param("afterId") Long afterId, @Param("beforeYear") int beforeYear,
+                                                @Param("limit") int limit);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM habit_completion_years WHERE habit_id IN (:habitIds) AND completion_year < :beforeYear",
+            nativeQuery = true)
+    int deleteCompletionYearsBefore(@Param("habitIds") Collection<Long> habitIds, @Param("beforeYear") int beforeYear);
+
+    // граница архива только растёт: годы после неё читаются из горячей таблицы без архива
+    @Modifying(flushAutomatically = true)
+    @Query("update Habit h set h.archivedThrough = :year"
+            + " where h.id in :ids and (h.archivedThrough is null or h.archivedThrough < :year)")
+    int markArchived(@Param("ids") Collection<Long> ids, @Param("year") int year);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "INSERT INTO habit_completion_years (habit_id, completion_year, days) VALUES (:habitId, :year, :days)",
+            nativeQuery = true)
+    int insertCompletionYear(@Param("habitId") Long habitId, @Param("year") int year, @Param("days") byte[] days);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE habit_completion_years SET days = :days WHERE habit_id = :habitId AND completion_year = :year",
+            nativeQuery = true)
+    int updateCompletionYear(@Param("habitId") Long habitId, @Param("year") int year, @Param("days") byte[] days);
+
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM habit_completion_years WHERE habit_id = :habitId AND completion_year = :year",
+            nativeQuery = true)
+    int deleteCompletionYear(@Param("habitId") Long habitId, @Param("year") int year);
 }
@@ -0,0 +1,9 @@
+package habit.habittracker.repositories;
+
+import habit.habittracker.models.HabitStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface HabitStatsRepository extends JpaRepository<HabitStats, Long> {
+}
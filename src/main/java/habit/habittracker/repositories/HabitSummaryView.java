@@ -0,0 +1,20 @@
+package habit.habittracker.repositories;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Строка сводки: поля привычки, её проекция habit_stats (null, если ещё не построена)
+// и битовый блок текущего года; archivedThrough — свёрнуты ли старые годы в архив;
+// version — версия привычки на момент чтения: по ней проверяется, не устарела ли пересобранная проекция
+public interface HabitSummaryView {
+    Long getHabitId();
+    Integer getFrequency();
+    LocalDateTime getCreatedAt();
+    Integer getTotalDone();
+    Integer getLongestStreak();
+    LocalDate getCurrentStreakStart();
+    LocalDate getLastCompletion();
+    byte[] getYearDays();
+    Integer getArchivedThrough();
+    Long getVersion();
+}
@@ -0,0 +1,7 @@
+package habit.habittracker.repositories;
+
+// id и версия привычки — всё, что нужно для ETag, без колонок и отметок
+public interface HabitVersionView {
+    Long getId();
+    Long getVersion();
+}
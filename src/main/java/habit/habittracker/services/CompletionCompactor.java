@@ -0,0 +1,105 @@
+package habit.habittracker.services;
+
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.repositories.ArchivedCompletionsRepository;
+import habit.habittracker.repositories.HabitRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+// Свёртка старых лет (habit.archive.*): горячие строки habit_completion_years старше keep-years
+// переносятся в сжатый блок привычки в habit_completion_archive, и горячая таблица держит только
+// последние годы. Отметки от этого не меняются — чтения HabitService накладывают архив сами.
+// Привычки идут пачками, каждая пачка — своя транзакция под блокировками записи.
+@Service
+public class CompletionCompactor {
+    private static final Logger log = LoggerFactory.getLogger(CompletionCompactor.class);
+
+    private final HabitRepository habitRepository;
+    private final ArchivedCompletionsRepository archiveRepository;
+    private final HabitLocks habitLocks;
+    private final TransactionTemplate transactionTemplate;
+    private final int keepYears;
+    private final int batchSize;
+
+    public CompletionCompactor(HabitRepository habitRepository, ArchivedCompletionsRepository archiveRepository,
+                               HabitLocks habitLocks, TransactionTemplate transactionTemplate,
+                               @Value("${habit.archive.keep-years:2}") int keepYears,
+                               @Value("${habit.archive.batch-size:100}") int batchSize) {
+        if (keepYears < ArchivedCompletions.MIN_HOT_YEARS) {
+            throw new IllegalArgumentException("habit.archive.keep-years must be at least " + ArchivedCompletions.MIN_HOT_YEARS);
+        }
+        if (batchSize <= 0) throw new IllegalArgumentException("habit.archive.batch-size must be positive");
+        this.habitRepository = habitRepository;
+        this.archiveRepository = archiveRepository;
+        this.habitLocks = habitLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.keepYears = keepYears;
+        this.batchSize = batchSize;
+    }
+
+    // "-" в habit.archive.cron отключает свёртку
+    @Scheduled(cron = "${habit.archive.cron:0 30 3 * * *}")
+    public void compactScheduled() {
+        try {
+            compact(LocalDate.now());
+        } catch (RuntimeException e) {
+            // свёрнутые пачки уже закоммичены, остальные дождутся следующего запуска
+            log.warn("Completion compaction failed", e);
+        }
+    }
+
+    // Возвращает число привычек, чьи годы ушли в архив
+    public int compact(LocalDate today) {
+        int beforeYear = today.getYear() - keepYears + 1;
+        int compacted = 0;
+        long afterId = 0;
+        List<Long> ids;
+        do {
+            ids = habitRepository.findIdsWithCompletionYearsBefore(afterId, beforeYear, batchSize);
+            if (ids.isEmpty()) break;
+            List<Long> batch = ids;
+            habitLocks.withLocks(batch, () -> transactionTemplate.execute(status -> compactBatch(batch, beforeYear)));
+            compacted += ids.size();
+            afterId = ids.get(ids.size() - 1);
+        } while (ids.size() == batchSize);
+        if (compacted > 0) log.info("Archived completions before {} for {} habits", beforeYear, compacted);
+        return compacted;
+    }
+
+    private int compactBatch(List<Long> ids, int beforeYear) {
+        // версия поднимается, как при любой записи: строки habits заблокированы до коммита,
+        // а запись другого экземпляра по отметкам, прочитанным до свёртки, откатится и повторится
+        habitRepository.incrementVersions(ids);
+        Map<Long, SortedMap<Integer, byte[]>> years = new HashMap<>();
+        archiveRepository.findAllById(ids).forEach(archive -> years.put(archive.getHabitId(), archive.years()));
+        // горячий блок года перекрывает архивный, в том числе нулевой — тогда год из архива уходит
+        for (Object[] row : habitRepository.findCompletionYears(ids, Year.MIN_VALUE, beforeYear - 1)) {
+            years.computeIfAbsent(((Number) row[0]).longValue(), habitId -> new TreeMap<>())
+                    .put(((Number) row[1]).intValue(), (byte[]) row[2]);
+        }
+        List<ArchivedCompletions> archives = new ArrayList<>();
+        List<Long> emptied = new ArrayList<>();
+        years.forEach((habitId, habitYears) -> {
+            ArchivedCompletions archive = ArchivedCompletions.of(habitId, habitYears);
+            if (archive != null) archives.add(archive);
+            else emptied.add(habitId);
+        });
+        archiveRepository.saveAll(archives);
+        archiveRepository.deleteAllById(emptied);
+        habitRepository.deleteCompletionYearsBefore(ids, beforeYear);
+        return habitRepository.markArchived(ids, beforeYear - 1);
+    }
+}
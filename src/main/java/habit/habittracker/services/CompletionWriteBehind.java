@@ -0,0 +1,250 @@
+package habit.habittracker.services;
+
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.models.CompletionSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+// Отложенная запись отметок (habit.write-behind.enabled). Отметка подтверждается, как только
+// легла в очередь; повторные отметки одного (привычка, день) схлопываются в последнее состояние.
+// В БД очередь уходит пакетами — по таймеру или как только набрался пакет. Запись удаляется из
+// очереди только после коммита, поэтому чтения, наложившие очередь на данные БД, её не теряют.
+@Component
+public class CompletionWriteBehind implements SmartLifecycle {
+    private static final Logger log = LoggerFactory.getLogger(CompletionWriteBehind.class);
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final boolean enabled;
+    private final int batchSize;
+    private final Duration flushInterval;
+    private final Duration offerTimeout;
+    private final int capacityLimit;
+    private final Semaphore capacity;
+    // значения — неизменяемые снимки, чтобы читатели не видели наполовину изменённую карту
+    private final ConcurrentHashMap<Long, Map<LocalDate, Boolean>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile Consumer<List<CheckInDTO>> sink;
+    private volatile ScheduledExecutorService flusher;
+
+    public CompletionWriteBehind(@Value("${habit.write-behind.enabled:false}") boolean enabled,
+                                 @Value("${habit.write-behind.capacity:10000}") int capacity,
+                                 @Value("${habit.write-behind.batch-size:500}") int batchSize,
+                                 @Value("${habit.write-behind.flush-interval:200ms}") Duration flushInterval,
+                                 @Value("${habit.write-behind.offer-timeout:2s}") Duration offerTimeout) {
+        this.enabled = enabled;
+        this.capacityLimit = capacity;
+        this.capacity = new Semaphore(capacity);
+        this.batchSize = batchSize;
+        this.flushInterval = flushInterval;
+        this.offerTimeout = offerTimeout;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Куда уходят пакеты; пакет должен либо закоммититься целиком, либо бросить исключение
+    public void bind(Consumer<List<CheckInDTO>> sink) {
+        this.sink = sink;
+    }
+
+    // Очередь полна дольше offer-timeout — RejectedExecutionException (клиенту 503)
+    public void enqueue(Long habitId, LocalDate date, boolean done) {
+        Map<LocalDate, Boolean> days = pending.get(habitId);
+        if (days != null && days.containsKey(date) && coalesce(habitId, date, done)) return;
+        try {
+            if (!capacity.tryAcquire(offerTimeout.toMillis(), TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Write-behind queue is full");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for write-behind queue", e);
+        }
+        AtomicBoolean added = new AtomicBoolean();
+        pending.compute(habitId, (id, current) -> {
+            Map<LocalDate, Boolean> updated = (current == null) ? new HashMap<>() : new HashMap<>(current);
+            added.set(updated.put(date, done) == null);
+            return Map.copyOf(updated);
+        });
+        if (!added.get()) capacity.release();
+        if (size() >= batchSize) requestFlush();
+    }
+
+    // Снимок очереди. Брать до чтения из БД: отметка, закоммиченная между чтением и наложением,
+    // останется в снимке, а не пропадёт из ответа.
+    public Map<Long, Map<LocalDate, Boolean>> snapshot() {
+        return pending.isEmpty() ? Map.of() : Map.copyOf(pending);
+    }
+
+    public static HabitDTO overlay(HabitDTO habit, Map<Long, Map<LocalDate, Boolean>> snapshot) {
+        Map<LocalDate, Boolean> days = snapshot.get(habit.getId());
+        if (days == null) return habit;
+        TreeSet<LocalDate> dates = new TreeSet<>(habit.getCompletedDates());
+        days.forEach((date, done) -> {
+            if (done) dates.add(date);
+            else dates.remove(date);
+        });
+        habit.setCompletedDates(new ArrayList<>(dates));
+        return habit;
+    }
+
+    public static void overlay(Long habitId, CompletionSet completions, Map<Long, Map<LocalDate, Boolean>> snapshot) {
+        Map<LocalDate, Boolean> days = snapshot.get(habitId);
+        if (days == null) return;
+        days.forEach((date, done) -> {
+            if (done) completions.add(date);
+            else completions.remove(date);
+        });
+    }
+
+    // число отложенных (привычка, день); одно разрешение семафора на каждую пару
+    public int size() {
+        return capacityLimit - capacity.availablePermits();
+    }
+
+    // Синхронно пишет отложенные отметки одной привычки — перед чтениями, которые очередь не накладывают
+    public void flush(Long habitId) {
+        if (!pending.containsKey(habitId)) return;
+        flushLock.lock();
+        try {
+            Map<LocalDate, Boolean> days = pending.get(habitId);
+            if (days != null) write(toEntries(habitId, days));
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            List<CheckInDTO> batch = new ArrayList<>(batchSize);
+            for (Map.Entry<Long, Map<LocalDate, Boolean>> habit : pending.entrySet()) {
+                for (CheckInDTO entry : toEntries(habit.getKey(), habit.getValue())) {
+                    batch.add(entry);
+                    if (batch.size() == batchSize) {
+                        write(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) write(batch);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void start() {
+        if (!enabled) return;
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "completion-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = flushInterval.toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Останавливаемся после веб-сервера: новых отметок уже не будет, очередь дописывается целиком
+    @Override
+    public void stop() {
+        ScheduledExecutorService executor = flusher;
+        if (executor == null) return;
+        executor.shutdown();
+        try {
+            executor.awaitTermination(flushInterval.toMillis() * 10, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int attempt = 1; attempt <= SHUTDOWN_FLUSH_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            flushQuietly();
+        }
+        if (!pending.isEmpty()) log.error("Write-behind queue not drained on shutdown: {} completions lost", size());
+        flusher = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return flusher != null;
+    }
+
+    @Override
+    public int getPhase() {
+        // веб-сервер останавливается на DEFAULT_PHASE - 2048, очередь — после него
+        return DEFAULT_PHASE - 4096;
+    }
+
+    private boolean coalesce(Long habitId, LocalDate date, boolean done) {
+        AtomicBoolean coalesced = new AtomicBoolean();
+        pending.computeIfPresent(habitId, (id, current) -> {
+            if (!current.containsKey(date)) return current;
+            coalesced.set(true);
+            Map<LocalDate, Boolean> updated = new HashMap<>(current);
+            updated.put(date, done);
+            return Map.copyOf(updated);
+        });
+        return coalesced.get();
+    }
+
+    private void requestFlush() {
+        ScheduledExecutorService executor = flusher;
+        if (executor != null && flushRequested.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                flushRequested.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flushAll();
+        } catch (RuntimeException e) {
+            // отметки остаются в очереди и уйдут следующим пакетом
+            log.warn("Write-behind flush failed, {} completions pending", size(), e);
+        }
+    }
+
+    private void write(List<CheckInDTO> batch) {
+        sink.accept(batch);
+        // снимаем из очереди только то, что записали: более новое состояние дня остаётся
+        for (CheckInDTO entry : batch) {
+            pending.computeIfPresent(entry.getHabitId(), (id, current) -> {
+                if (!Objects.equals(current.get(entry.getDate()), entry.getDone())) return current;
+                capacity.release();
+                Map<LocalDate, Boolean> updated = new HashMap<>(current);
+                updated.remove(entry.getDate());
+                return updated.isEmpty() ? null : Map.copyOf(updated);
+            });
+        }
+    }
+
+    private static List<CheckInDTO> toEntries(Long habitId, Map<LocalDate, Boolean> days) {
+        List<CheckInDTO> entries = new ArrayList<>(days.size());
+        days.forEach((date, done) -> entries.add(new CheckInDTO(habitId, date, done)));
+        return entries;
+    }
+}
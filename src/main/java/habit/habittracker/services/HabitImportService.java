@@ -0,0 +1,52 @@
+package habit.habittracker.services;
+
+import habit.habittracker.dto.BulkImportResultDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Service
+public class HabitImportService {
+    private final HabitRepository habitRepository;
+    private final EntityManager entityManager;
+    private final int chunkSize;
+
+    public HabitImportService(HabitRepository habitRepository, EntityManager entityManager,
+                              @Value("${habit.import.chunk-size:500}") int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("habit.import.chunk-size must be positive");
+        this.habitRepository = habitRepository;
+        this.entityManager = entityManager;
+        this.chunkSize = chunkSize;
+    }
+
+    // Весь импорт — одна транзакция, но контекст сбрасывается после каждой порции:
+    // вставки привычек и годовых масок уходят пакетами по hibernate.jdbc.batch_size, память не растёт
+    @Transactional
+    public BulkImportResultDTO importHabits(List<HabitDTO> habits) {
+        long started = System.nanoTime();
+        List<Long> ids = new ArrayList<>(habits.size());
+        for (int from = 0; from < habits.size(); from += chunkSize) {
+            List<Habit> chunk = new ArrayList<>(chunkSize);
+            for (HabitDTO dto : habits.subList(from, Math.min(from + chunkSize, habits.size()))) {
+                Habit habit = Habit.fromDto(dto);
+                habit.setId(null); // импорт всегда создаёт новые привычки
+                chunk.add(habit);
+            }
+            habitRepository.saveAll(chunk);
+            entityManager.flush();
+            chunk.forEach(habit -> ids.add(habit.getId()));
+            entityManager.clear();
+        }
+        long elapsedNanos = System.nanoTime() - started;
+        double rowsPerSecond = elapsedNanos > 0 ? ids.size() * 1e9 / elapsedNanos : 0.0;
+        return new BulkImportResultDTO(ids.size(), ids, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond);
+    }
+}
@@ -0,0 +1,56 @@
+package habit.habittracker.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Полосатые блокировки по id привычки: записи одной привычки в этом процессе идут по очереди,
+// разные привычки почти всегда попадают в разные полосы и не мешают друг другу.
+// Между экземплярами сервиса порядок держит @Version у Habit.
+@Component
+public class HabitLocks {
+    private final ReentrantLock[] stripes;
+
+    public HabitLocks(@Value("${habit.locks.stripes:256}") int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) this.stripes[i] = new ReentrantLock();
+    }
+
+    public <T> T withLock(Long habitId, Supplier<T> action) {
+        ReentrantLock lock = stripeFor(habitId);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Полосы берутся по возрастанию номера — два пакета с пересекающимися id не зациклятся
+    public <T> T withLocks(Collection<Long> habitIds, Supplier<T> action) {
+        int[] indexes = habitIds.stream().mapToInt(this::indexFor).distinct().sorted().toArray();
+        int locked = 0;
+        try {
+            for (int index : indexes) {
+                stripes[index].lock();
+                locked++;
+            }
+            return action.get();
+        } finally {
+            for (int i = locked - 1; i >= 0; i--) stripes[indexes[i]].unlock();
+        }
+    }
+
+    private ReentrantLock stripeFor(Long habitId) {
+        return stripes[indexFor(habitId)];
+    }
+
+    private int indexFor(Long habitId) {
+        int hash = Long.hashCode(habitId);
+        return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+    }
+}
@@ -0,0 +1,39 @@
+package habit.habittracker.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+// Метрики статистики, которых нет у кэша и таймеров: сколько раз статистика считалась по БД
+// и по скольким отметкам. Попадания в кэш — стандартная метрика cache.gets{name=habitStats}.
+@Component
+public class HabitMetrics {
+    private final DistributionSummary statsCompletions;
+    private final Counter statsDatabaseLoads;
+
+    // в срезах тестов без MeterRegistry метрики уходят в глобальный реестр
+    @Autowired
+    public HabitMetrics(ObjectProvider<MeterRegistry> registry) {
+        this(registry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public HabitMetrics(MeterRegistry registry) {
+        this.statsCompletions = DistributionSummary.builder("habit.stats.completions")
+                .description("Completions behind each stats computation")
+                .baseUnit("completions")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.statsDatabaseLoads = Counter.builder("habit.stats.database.loads")
+                .description("Stats computed from the database instead of the cache")
+                .register(registry);
+    }
+
+    public void statsComputed(int completions) {
+        statsCompletions.record(completions);
+        statsDatabaseLoads.increment();
+    }
+}
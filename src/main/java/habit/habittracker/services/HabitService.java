@@ -1,27 +1,277 @@
 package habit.habittracker.services;
 
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.CheckInResultDTO;
+import habit.habittracker.dto.CompletionBatchDTO;
 import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitHeatmapDTO;
+import habit.habittracker.dto.HabitPageDTO;
 import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.RollingRatesDTO;
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.models.CompletionSet;
 import habit.habittracker.models.Habit;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.models.StreakEngine;
+import habit.habittracker.repositories.ArchivedCompletionsRepository;
 import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.repositories.HabitVersionView;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDate;
-import java.time.temporal.ChronoUnit;
+import java.time.Month;
+import java.time.Year;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+// таймер на каждый публичный метод: habit.service{class, method, exception}
 @Service
+@Timed(value = "habit.service", percentiles = {0.5, 0.95, 0.99}, histogram = true)
 public class HabitService {
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 500;
+    public static final int MAX_CHECK_IN_ENTRIES = 500;
+    public static final int MAX_WRITE_ATTEMPTS = 3;
+    // столько привычек выгрузки дочитывают отметки одним запросом; совпадает с fetch size курсора
+    public static final int EXPORT_CHUNK_SIZE = 500;
+
     private final HabitRepository habitRepository;
-    public HabitService(HabitRepository habitRepository) {
+    private final HabitStatsRepository habitStatsRepository;
+    private final ArchivedCompletionsRepository archiveRepository;
+    private final EntityManager entityManager;
+    private final CacheManager cacheManager;
+    private final HabitLocks habitLocks;
+    private final TransactionTemplate transactionTemplate;
+    private final CompletionWriteBehind writeBehind;
+    private final HabitMetrics habitMetrics;
+    public HabitService(HabitRepository habitRepository, HabitStatsRepository habitStatsRepository,
+                        ArchivedCompletionsRepository archiveRepository,
+                        EntityManager entityManager, CacheManager cacheManager,
+                        HabitLocks habitLocks, TransactionTemplate transactionTemplate,
+                        CompletionWriteBehind writeBehind, HabitMetrics habitMetrics) {
         this.habitRepository = habitRepository;
+        this.habitStatsRepository = habitStatsRepository;
+        this.archiveRepository = archiveRepository;
+        this.entityManager = entityManager;
+        this.cacheManager = cacheManager;
+        this.habitLocks = habitLocks;
+        this.transactionTemplate = transactionTemplate;
+        this.writeBehind = writeBehind;
+        this.habitMetrics = habitMetrics;
+        writeBehind.bind(this::flushCheckIns);
     }
 
+    @Transactional(readOnly = true)
     public List<HabitDTO> getAllHabits() {
-        return habitRepository.findAll().stream().map(HabitDTO::fromEntity).collect(Collectors.toList());
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        List<Habit> habits = habitRepository.findAll();
+        Map<Long, CompletionSet> archived = archivedCompletions(habits);
+        return habits.stream()
+                .map(habit -> CompletionWriteBehind.overlay(HabitDTO.fromEntity(habit,
+                        archived.getOrDefault(habit.getId(), habit.getCompletions()).toDates()), queued))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public HabitPageDTO getHabitsPage(String after, Integer limit) {
+        return getHabitsPage(after, limit, null, null);
+    }
+
+    // completedFrom/completedTo — в ответ попадают только отметки окна, и читаются только его годы
+    @Transactional(readOnly = true)
+    public HabitPageDTO getHabitsPage(String after, Integer limit, LocalDate completedFrom, LocalDate completedTo) {
+        int size = pageSize(limit);
+        Long afterId = afterId(after);
+        boolean windowed = completedFrom != null || completedTo != null;
+        LocalDate from = (completedFrom != null) ? completedFrom : LocalDate.MIN;
+        LocalDate to = (completedTo != null) ? completedTo : LocalDate.MAX;
+        if (from.isAfter(to)) throw new IllegalArgumentException("completedFrom must not be after completedTo");
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+
+        // берём на одну запись больше, чтобы понять, есть ли следующая страница
+        List<Habit> habits = habitRepository.findByIdGreaterThanOrderByIdAsc(afterId, Limit.of(size + 1));
+        boolean hasNext = habits.size() > size;
+        if (hasNext) habits = habits.subList(0, size);
+        List<Long> ids = habits.stream().map(Habit::getId).collect(Collectors.toList());
+
+        List<HabitDTO> items;
+        if (windowed) {
+            // архив читаем только у привычек, чьи свёрнутые годы попадают в окно
+            List<Long> archivedIds = habits.stream()
+                    .filter(habit -> habit.getArchivedThrough() != null && from.getYear() <= habit.getArchivedThrough())
+                    .map(Habit::getId)
+                    .toList();
+            Map<Long, CompletionSet> completions = ids.isEmpty() ? Map.of() : loadCompletions(ids, from, to, archivedIds);
+            items = habits.stream().map(habit -> {
+                CompletionSet set = completions.getOrDefault(habit.getId(), new CompletionSet());
+                CompletionWriteBehind.overlay(habit.getId(), set, queued);
+                return HabitDTO.fromEntity(habit, set.toDates(from, to));
+            }).collect(Collectors.toList());
+        } else {
+            // второй запрос дочитывает отметки всей страницы разом
+            Map<Long, Habit> withCompletions = ids.isEmpty() ? Map.of() : habitRepository
+                    .findWithCompletionsByIdIn(ids).stream()
+                    .collect(Collectors.toMap(Habit::getId, Function.identity()));
+            List<Habit> loaded = habits.stream().map(habit -> withCompletions.getOrDefault(habit.getId(), habit)).toList();
+            Map<Long, CompletionSet> archived = archivedCompletions(loaded);
+            items = loaded.stream()
+                    .map(habit -> HabitDTO.fromEntity(habit, archived.getOrDefault(habit.getId(), habit.getCompletions()).toDates()))
+                    .map(habit -> CompletionWriteBehind.overlay(habit, queued))
+                    .collect(Collectors.toList());
+        }
+        String nextCursor = hasNext ? HabitPageDTO.encodeCursor(habits.get(size - 1).getId()) : null;
+        return new HabitPageDTO(items, nextCursor);
+    }
+
+    // Скользящие доли для карточек списка. Окна берутся из проекций; устаревшие за день
+    // досчитываются по блокам последнего года одним запросом на всю страницу (без записи —
+    // сохранит их первое чтение статистики привычки)
+    @Transactional(readOnly = true)
+    public List<HabitDTO> withRollingRates(List<HabitDTO> habits) {
+        if (habits.isEmpty()) return habits;
+        LocalDate today = LocalDate.now();
+        List<Long> ids = habits.stream().map(HabitDTO::getId).toList();
+        Map<Long, HabitStats> stats = habitStatsRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(HabitStats::getHabitId, Function.identity()));
+        List<Long> stale = ids.stream()
+                .filter(id -> !stats.containsKey(id) || stats.get(id).rollingNeedsAdvance(today))
+                .toList();
+        Map<Long, CompletionSet> recent = stale.isEmpty() ? Map.of() : recentCompletions(stale, today);
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        for (HabitDTO habit : habits) {
+            HabitStats projection = stats.get(habit.getId());
+            if (projection == null || projection.rollingNeedsAdvance(today)) {
+                projection = new HabitStats();
+                CompletionSet completions = recent.getOrDefault(habit.getId(), new CompletionSet());
+                // в ответе уже наложена очередь write-behind — окна считаем по тем же данным
+                CompletionWriteBehind.overlay(habit.getId(), completions, queued);
+                projection.advanceRolling(today, completions);
+            }
+            habit.setRolling(RollingRatesDTO.of(projection.rollingCounts(), habit.getCreatedAt(), habit.getFrequency(), today));
+        }
+        return habits;
+    }
+
+    // Сильный ETag страницы из версий её привычек: сама страница, её отметки и курсор не читаются.
+    // Любая запись поднимает версию привычки; ещё не записанные отметки из очереди тоже входят в хеш.
+    @Transactional(readOnly = true)
+    public String getHabitsPageETag(String after, Integer limit, LocalDate completedFrom, LocalDate completedTo,
+                                    boolean rolling) {
+        int size = pageSize(limit);
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        List<HabitVersionView> versions = habitRepository.findVersionsByIdGreaterThanOrderByIdAsc(afterId(after), Limit.of(size + 1));
+        MessageDigest digest = sha256();
+        // скользящие окна сдвигаются в полночь и без записей
+        String window = rolling ? "|rolling:" + LocalDate.now() : "";
+        digest.update((size + "|" + completedFrom + "|" + completedTo + "|" + (versions.size() > size) + window)
+                .getBytes(StandardCharsets.UTF_8));
+        for (HabitVersionView habit : versions.subList(0, Math.min(size, versions.size()))) {
+            Map<LocalDate, Boolean> pending = queued.get(habit.getId());
+            String entry = "|" + habit.getId() + ":" + habit.getVersion() + ((pending == null) ? "" : ":" + pending.hashCode());
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        return "\"" + HexFormat.of().formatHex(digest.digest(), 0, 16) + "\"";
+    }
+
+    // Отметки привычки за окно [from, to] (по умолчанию — последний год). Читаются только годовые
+    // строки окна, поэтому размер ответа и цена запроса зависят от окна, а не от всей истории.
+    @Transactional(readOnly = true)
+    public List<LocalDate> getCompletions(Long id, LocalDate from, LocalDate to) {
+        LocalDate end = (to != null) ? to : LocalDate.now();
+        LocalDate start = (from != null) ? from : end.minusYears(1).plusDays(1);
+        if (start.isAfter(end)) throw new IllegalArgumentException("from must not be after to");
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        if (!habitRepository.existsById(id)) throw new RuntimeException("Not found");
+        List<Long> archivedIds = ArchivedCompletions.mayHold(start.getYear(), LocalDate.now()) ? List.of(id) : List.of();
+        CompletionSet completions = loadCompletions(List.of(id), start, end, archivedIds).getOrDefault(id, new CompletionSet());
+        CompletionWriteBehind.overlay(id, completions, queued);
+        return completions.toDates(start, end);
+    }
+
+    // Год привычки для тепловой карты: одна годовая строка по ключу, биты уходят клиенту как есть,
+    // без разворачивания в даты
+    @Transactional(readOnly = true)
+    public HabitHeatmapDTO getHeatmap(Long id, Integer year) {
+        int y = (year != null) ? year : LocalDate.now().getYear();
+        if (y < Year.MIN_VALUE || y > Year.MAX_VALUE) throw new IllegalArgumentException("year is out of range");
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        if (!habitRepository.existsById(id)) throw new RuntimeException("Not found");
+        List<byte[]> rows = habitRepository.findCompletionYear(id, y);
+        byte[] bits = rows.isEmpty() ? archivedYear(id, y) : rows.get(0);
+        for (Map.Entry<LocalDate, Boolean> day : queued.getOrDefault(id, Map.of()).entrySet()) {
+            if (day.getKey().getYear() == y) bits = CompletionSet.withDay(bits, day.getKey(), day.getValue());
+        }
+        if (bits == null) bits = new byte[CompletionSet.BYTES_PER_YEAR];
+        boolean leap = Year.isLeap(y);
+        int[] monthly = new int[12];
+        int total = 0;
+        for (Month month : Month.values()) {
+            int first = month.firstDayOfYear(leap) - 1;
+            monthly[month.ordinal()] = CompletionSet.countDays(bits, first, first + month.length(leap));
+            total += monthly[month.ordinal()];
+        }
+        return new HabitHeatmapDTO(id, y, Year.of(y).length(), Base64.getEncoder().encodeToString(bits), total, monthly);
+    }
+
+    // Отдаёт привычки прямо из курсора БД пачками по EXPORT_CHUNK_SIZE: отметки пачки (и архивы
+    // свёрнутых) читаются одним запросом, а не ленивой коллекцией каждой привычки. Отданные
+    // сущности сразу отсоединяются, чтобы контекст персистентности не рос вместе с таблицей
+    @Transactional(readOnly = true)
+    public void exportHabits(Consumer<HabitDTO> sink) {
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        List<Habit> chunk = new ArrayList<>(EXPORT_CHUNK_SIZE);
+        try (Stream<Habit> habits = habitRepository.streamAllByOrderByIdAsc()) {
+            habits.forEach(habit -> {
+                chunk.add(habit);
+                if (chunk.size() == EXPORT_CHUNK_SIZE) exportChunk(chunk, queued, sink);
+            });
+        }
+        exportChunk(chunk, queued, sink);
+    }
+
+    private void exportChunk(List<Habit> chunk, Map<Long, Map<LocalDate, Boolean>> queued, Consumer<HabitDTO> sink) {
+        if (chunk.isEmpty()) return;
+        List<Long> ids = chunk.stream().map(Habit::getId).toList();
+        List<Long> archivedIds = chunk.stream().filter(habit -> habit.getArchivedThrough() != null).map(Habit::getId).toList();
+        Map<Long, CompletionSet> completions = loadCompletions(ids, LocalDate.MIN, LocalDate.MAX, archivedIds);
+        for (Habit habit : chunk) {
+            List<LocalDate> dates = completions.getOrDefault(habit.getId(), new CompletionSet()).toDates();
+            sink.accept(CompletionWriteBehind.overlay(HabitDTO.fromEntity(habit, dates), queued));
+            entityManager.detach(habit);
+        }
+        chunk.clear();
     }
 
     public HabitDTO addHabit(HabitDTO habit) {
@@ -29,87 +279,343 @@ public class HabitService {
         return HabitDTO.fromEntity(saved);
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH}, key = "#id")
     public HabitDTO updateHabit(Long id, Habit details) {
-        Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
-        habit.setTitle(details.getTitle());
-        habit.setDescription(details.getDescription());
-        habit.setFrequency(details.getFrequency());
-        Habit saved = habitRepository.save(habit);
-        return HabitDTO.fromEntity(saved);
+        Map<Long, Map<LocalDate, Boolean>> queued = writeBehind.snapshot();
+        return write(List.of(id), () -> {
+            Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
+            habit.setTitle(details.getTitle());
+            habit.setDescription(details.getDescription());
+            habit.setFrequency(details.getFrequency());
+            Habit saved = habitRepository.save(habit);
+            return CompletionWriteBehind.overlay(HabitDTO.fromEntity(saved, allCompletions(saved).toDates()), queued);
+        });
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH}, key = "#id")
     public void deleteHabit(Long id) {
-        if (!habitRepository.existsById(id)) throw new RuntimeException("Not found");
-        habitRepository.deleteById(id);
+        write(List.of(id), () -> {
+            if (!habitRepository.existsById(id)) throw new RuntimeException("Not found");
+            habitStatsRepository.deleteById(id);
+            archiveRepository.deleteById(id);
+            habitRepository.deleteById(id);
+            return null;
+        });
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH}, key = "#id")
     public HabitDTO markHabitDone(Long id, LocalDate date) {
-        Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
-        List<LocalDate> dates = new ArrayList<>(habit.getCompletedDates()); // ✅ создаём копию
-        if (!dates.contains(date)) {
-            dates.add(date);
-            habit.setCompletedDates(dates);
+        if (writeBehind.isEnabled()) {
+            HabitDTO habit = transactionTemplate.execute(status -> habitRepository.findById(id)
+                    .map(found -> HabitDTO.fromEntity(found, allCompletions(found).toDates()))
+                    .orElseThrow(() -> new RuntimeException("Not found")));
+            writeBehind.enqueue(id, date, true);
+            // своя отметка накладывается отдельно: очередь могла успеть записать её и забыть
+            return CompletionWriteBehind.overlay(CompletionWriteBehind.overlay(habit, writeBehind.snapshot()),
+                    Map.of(id, Map.of(date, true)));
         }
-        return HabitDTO.fromEntity(habitRepository.save(habit));
+        return write(List.of(id), () -> {
+            Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
+            // правка архивного года ложится горячим блоком, который перекрывает архив
+            CompletionSet completions = allCompletions(habit);
+            if (completions.add(date)) { // повторная отметка ничего не меняет
+                updateStats(habit, stats -> stats.recordAdded(date, completions));
+            }
+            return HabitDTO.fromEntity(habitRepository.save(habit), completions.toDates());
+        });
     }
 
+    @CacheEvict(cacheNames = {CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH}, key = "#id")
     public HabitDTO toggleHabitDone(Long id, LocalDate date) {
-        Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
-        List<LocalDate> dates = new ArrayList<>(habit.getCompletedDates()); // ✅ копия
-        if (dates.contains(date)) dates.remove(date);
-        else dates.add(date);
-        habit.setCompletedDates(dates);
-        return HabitDTO.fromEntity(habitRepository.save(habit));
+        // переключение читает текущее состояние дня — отложенные отметки должны быть уже в БД
+        writeBehind.flush(id);
+        return write(List.of(id), () -> {
+            Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
+            CompletionSet completions = allCompletions(habit);
+            if (completions.remove(date)) {
+                updateStats(habit, stats -> stats.recordRemoved(date, completions));
+            } else {
+                completions.add(date);
+                updateStats(habit, stats -> stats.recordAdded(date, completions));
+            }
+            return HabitDTO.fromEntity(habitRepository.save(habit), completions.toDates());
+        });
+    }
+
+    // Одна загрузка и один flush на весь пакет; статистика пересобирается один раз
+    @CacheEvict(cacheNames = {CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH}, key = "#id")
+    public HabitDTO applyCompletions(Long id, CompletionBatchDTO batch) {
+        Set<LocalDate> toAdd = (batch.getAdd() != null) ? batch.getAdd() : Set.of();
+        Set<LocalDate> toRemove = (batch.getRemove() != null) ? batch.getRemove() : Set.of();
+        if (!Collections.disjoint(toAdd, toRemove)) {
+            throw new IllegalArgumentException("Date cannot be both added and removed");
+        }
+        writeBehind.flush(id);
+        return write(List.of(id), () -> {
+            Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
+            CompletionSet completions = allCompletions(habit);
+            boolean changed = false;
+            for (LocalDate date : toRemove) changed |= completions.remove(date);
+            for (LocalDate date : toAdd) changed |= completions.add(date);
+            if (changed) updateStats(habit, stats -> {
+                stats.rebuildFrom(completions);
+                stats.advanceRolling(LocalDate.now(), completions);
+            });
+            return HabitDTO.fromEntity(habitRepository.save(habit), completions.toDates());
+        });
+    }
+
+    // Отметки по нескольким привычкам за один запрос: id привычек и их статистика читаются
+    // двумя запросами, каждая отметка пишет одну строку (habit_id, год).
+    // Ошибка в одной записи не отменяет остальные.
+    public List<CheckInResultDTO> checkIn(List<CheckInDTO> entries) {
+        if (entries.size() > MAX_CHECK_IN_ENTRIES) {
+            throw new IllegalArgumentException("Too many check-in entries: " + entries.size());
+        }
+        Set<Long> ids = entries.stream().map(CheckInDTO::getHabitId).filter(Objects::nonNull).collect(Collectors.toSet());
+        if (writeBehind.isEnabled()) return enqueueCheckIn(entries, ids);
+        return write(ids, () -> applyCheckIn(entries, ids));
+    }
+
+    // Отметки подтверждаются после постановки в очередь; проверяется только существование привычек
+    private List<CheckInResultDTO> enqueueCheckIn(List<CheckInDTO> entries, Set<Long> ids) {
+        Set<Long> existing = new HashSet<>(ids.isEmpty() ? List.of() : habitRepository.findExistingIds(ids));
+        List<CheckInResultDTO> results = new ArrayList<>(entries.size());
+        for (CheckInDTO entry : entries) {
+            LocalDate date = (entry.getDate() != null) ? entry.getDate() : LocalDate.now();
+            boolean done = entry.getDone() == null || entry.getDone();
+            if (entry.getHabitId() == null || !existing.contains(entry.getHabitId())) {
+                results.add(CheckInResultDTO.failed(entry.getHabitId(), date, done, "Not found"));
+                continue;
+            }
+            writeBehind.enqueue(entry.getHabitId(), date, done);
+            results.add(CheckInResultDTO.ok(entry.getHabitId(), date, done));
+        }
+        evictStatsAfterCommit(existing);
+        return results;
+    }
+
+    // Пакет из очереди отложенной записи: тот же путь, что и синхронный check-in
+    private void flushCheckIns(List<CheckInDTO> entries) {
+        Set<Long> ids = entries.stream().map(CheckInDTO::getHabitId).collect(Collectors.toSet());
+        write(ids, () -> applyCheckIn(entries, ids));
+    }
+
+    private List<CheckInResultDTO> applyCheckIn(List<CheckInDTO> entries, Set<Long> ids) {
+        // запись по ключу идёт мимо Hibernate, поэтому версию поднимаем сами: строки habits
+        // остаются заблокированными до коммита, а чужая запись со старой версией откатится
+        if (!ids.isEmpty()) habitRepository.incrementVersions(ids);
+        // ни сущности привычек, ни их отметки не загружаются: только id и строки habit_stats
+        Set<Long> existing = new HashSet<>(ids.isEmpty() ? List.of() : habitRepository.findExistingIds(ids));
+        Map<Long, HabitStats> stats = habitStatsRepository.findAllById(existing).stream()
+                .collect(Collectors.toMap(HabitStats::getHabitId, Function.identity()));
+        Set<Long> staleStats = new HashSet<>();
+
+        List<CheckInResultDTO> results = new ArrayList<>(entries.size());
+        for (CheckInDTO entry : entries) {
+            LocalDate date = (entry.getDate() != null) ? entry.getDate() : LocalDate.now();
+            boolean done = entry.getDone() == null || entry.getDone();
+            Long habitId = entry.getHabitId();
+            if (habitId == null || !existing.contains(habitId)) {
+                results.add(CheckInResultDTO.failed(habitId, date, done, "Not found"));
+                continue;
+            }
+            if (writeCompletion(habitId, date, done)) {
+                HabitStats habitStats = stats.get(habitId);
+                boolean applied = habitStats != null && !staleStats.contains(habitId)
+                        && (done ? habitStats.tryRecordAdded(date) : habitStats.tryRecordRemoved(date));
+                if (!applied) staleStats.add(habitId);
+            }
+            results.add(CheckInResultDTO.ok(habitId, date, done));
+        }
+        // отметки задним числом без чтения масок не учесть — такую проекцию удаляем, getStats пересоберёт её
+        List<HabitStats> outdated = staleStats.stream().map(stats::remove).filter(Objects::nonNull).toList();
+        habitStatsRepository.saveAll(stats.values());
+        habitStatsRepository.deleteAll(outdated);
+        evictStatsAfterCommit(existing);
+        return results;
+    }
+
+    // ETag статистики: версия привычки и сегодняшний день — серия и доля выполнения меняются и без записей.
+    // Очередь привычки сначала дописывается, иначе её отметки не попали бы в версию.
+    public String getStatsETag(Long id, StreakEngine.Mode mode) {
+        writeBehind.flush(id);
+        HabitVersionView habit = habitRepository.findVersionById(id).orElseThrow(() -> new RuntimeException("Not found"));
+        String suffix = (mode == StreakEngine.Mode.DAILY) ? "" : "-" + mode.name().toLowerCase();
+        return "\"" + id + "-" + habit.getVersion() + "-" + LocalDate.now().toEpochDay() + suffix + "\"";
     }
 
+    // Серии в неделях: неделя засчитана, если в ней набрано frequency отметок. Считается движком
+    // за один проход по всем отметкам, без проекции habit_stats и без кэша.
+    public HabitStatsDTO getWeeklyStats(Long id) {
+        writeBehind.flush(id);
+        return transactionTemplate.execute(status -> {
+            Habit habit = habitRepository.findById(id).orElseThrow(() -> new RuntimeException("Not found"));
+            long today = LocalDate.now().toEpochDay();
+            long created = (habit.getCreatedAt() != null) ? habit.getCreatedAt().toLocalDate().toEpochDay() : today;
+            StreakEngine.Result result = StreakEngine.evaluate(allCompletions(habit).toEpochDays(),
+                    StreakEngine.Mode.WEEKLY, habit.getFrequency(), created, today);
+            habitMetrics.statsComputed(result.totalDone());
+            return new HabitStatsDTO(id, result.totalDone(), result.successRate(), result.currentStreak(), result.longestStreak());
+        });
+    }
+
+    // Читает только строку привычки и строку habit_stats; отметки не загружаются.
+    // Статистика считается по БД, поэтому отложенные отметки привычки сначала записываются.
+    // Чтение может вставить недостающую проекцию и сдвигает окна, поэтому идёт как запись:
+    // под блокировкой привычки и с повтором, если другой экземпляр успел вставить ту же строку.
+    @Cacheable(cacheNames = CacheConfig.HABIT_STATS, key = "#id")
     public HabitStatsDTO getStats(Long id) {
+        writeBehind.flush(id);
+        return write(List.of(id), () -> computeStats(id));
+    }
+
+    private HabitStatsDTO computeStats(Long id) {
         Habit habit = habitRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Not found"));
-        List<LocalDate> dates = new ArrayList<>(habit.getCompletedDates());
-
-        LocalDate createdAtDate = (habit.getCreatedAt() != null)
-                ? habit.getCreatedAt().toLocalDate()
-                : LocalDate.now();
-
-        int total = dates.size();
-        int frequency = habit.getFrequency() > 0 ? habit.getFrequency() : 1;
-
-        long lifetimeDays = ChronoUnit.DAYS.between(createdAtDate, LocalDate.now()) + 1;
-        double idealCompletions = (lifetimeDays / 7.0) * frequency;
-
-        double successRate = idealCompletions > 0
-                ? Math.min(100.0, (total * 100.0 / idealCompletions))
-                : 0.0;
-
-        // streaks
-        Collections.sort(dates);
-        int longest = 0;
-        int current = 0;
-        LocalDate prev = null;
-        for (LocalDate d : dates) {
-            if (prev == null || prev.plusDays(1).isEqual(d)) {
-                current = (prev == null ? 1 : current + 1);
-            } else {
-                longest = Math.max(longest, current);
-                current = 1;
+        HabitStats stats = habitStatsRepository.findById(id).orElseGet(() -> rebuildStats(habit));
+
+        LocalDate today = LocalDate.now();
+        int total = stats.getTotalDone();
+        double successRate = HabitStats.successRate(total, HabitStats.idealCompletions(habit.getCreatedAt(), habit.getFrequency(), today));
+
+        // отметки (и архив) читаются, только если серию не посчитать по проекции
+        int currentStreak = stats.currentStreak(today,
+                stats.currentStreakNeedsCompletions(today) ? allCompletions(habit) : habit.getCompletions());
+        // первое чтение за день сдвигает окна по блокам последнего года; управляемая проекция
+        // сохранится при коммите, и @DynamicUpdate запишет только столбцы окон
+        if (stats.rollingNeedsAdvance(today)) {
+            stats.advanceRolling(today, recentCompletions(List.of(id), today).getOrDefault(id, new CompletionSet()));
+        }
+        habitMetrics.statsComputed(total);
+        return new HabitStatsDTO(habit.getId(), total, successRate, currentStreak, stats.getLongestStreak(),
+                RollingRatesDTO.of(stats.rollingCounts(), habit.getCreatedAt(), habit.getFrequency(), today));
+    }
+
+    // Запись под блокировкой привычек в собственной транзакции: транзакция открывается после
+    // захвата блокировки и коммитится до её снятия. Конфликт версий с другим экземпляром
+    // сервиса или его же вставка проекции habit_stats — вся транзакция повторяется, не больше
+    // MAX_WRITE_ATTEMPTS раз; повтор найдёт чужую строку проекции и обновит её.
+    private <T> T write(Collection<Long> habitIds, Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return habitLocks.withLocks(habitIds, () -> transactionTemplate.execute(status -> action.get()));
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (attempt >= MAX_WRITE_ATTEMPTS) throw e;
             }
-            prev = d;
-            longest = Math.max(longest, current);
         }
+    }
 
-        // current streak
-        int currentStreak = 0;
-        LocalDate today = LocalDate.now();
-        LocalDate pointer = today;
-        while (dates.contains(pointer)) {
-            currentStreak++;
-            pointer = pointer.minusDays(1);
+    // completions к этому моменту уже изменены; нет проекции — строим её целиком
+    private void updateStats(Habit habit, Consumer<HabitStats> change) {
+        HabitStats stats = habitStatsRepository.findById(habit.getId()).orElse(null);
+        if (stats == null) {
+            rebuildStats(habit);
+            return;
+        }
+        change.accept(stats);
+        habitStatsRepository.save(stats);
+    }
+
+    private void evictStatsAfterCommit(Collection<Long> ids) {
+        List<Cache> caches = Stream.of(CacheConfig.HABIT_STATS, CacheConfig.HABIT_STATS_BATCH)
+                .map(cacheManager::getCache)
+                .filter(Objects::nonNull)
+                .toList();
+        if (caches.isEmpty() || ids.isEmpty()) return;
+        List<Long> evicted = List.copyOf(ids);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            caches.forEach(cache -> evicted.forEach(cache::evict));
+            return;
         }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                caches.forEach(cache -> evicted.forEach(cache::evict));
+            }
+        });
+    }
+
+    // Одна строка (habit_id, год): чтение по первичному ключу и insert/update/delete только её.
+    // Свёрнутый год возвращается горячей строкой поверх архива; опустевший — нулевой, чтобы архив не проступил.
+    // false — день уже в нужном состоянии, записи не было.
+    private boolean writeCompletion(Long habitId, LocalDate date, boolean done) {
+        int year = date.getYear();
+        List<byte[]> rows = habitRepository.findCompletionYear(habitId, year);
+        boolean hot = !rows.isEmpty();
+        byte[] bits = hot ? rows.get(0) : archivedYear(habitId, year);
+        byte[] updated = CompletionSet.withDay(bits, date, done);
+        if (updated == bits) return false;
+        if (updated == null && ArchivedCompletions.mayHold(year, LocalDate.now())) updated = new byte[CompletionSet.BYTES_PER_YEAR];
+        if (!hot) habitRepository.insertCompletionYear(habitId, year, updated);
+        else if (updated == null) habitRepository.deleteCompletionYear(habitId, year);
+        else habitRepository.updateCompletionYear(habitId, year, updated);
+        return true;
+    }
 
-        return new HabitStatsDTO(habit.getId(), total, successRate, currentStreak, longest);
+    private HabitStats rebuildStats(Habit habit) {
+        CompletionSet completions = allCompletions(habit);
+        HabitStats stats = HabitStats.of(habit.getId(), completions);
+        // отметки уже загружены целиком — окна считаем сразу, а не при первом чтении
+        stats.advanceRolling(LocalDate.now(), completions);
+        habitStatsRepository.save(stats);
+        return stats;
     }
 
+    // Полная история: горячие годы сущности и архив, если привычку сворачивали
+    private CompletionSet allCompletions(Habit habit) {
+        if (habit.getArchivedThrough() == null) return habit.getCompletions();
+        return habit.getCompletions(archiveRepository.findById(habit.getId()).orElse(null));
+    }
 
+    // Полные истории свёрнутых привычек списка — архивы одним запросом; у остальных история целиком в сущности
+    private Map<Long, CompletionSet> archivedCompletions(Collection<Habit> habits) {
+        Map<Long, CompletionSet> completions = new HashMap<>();
+        for (Habit habit : habits) {
+            if (habit.getArchivedThrough() != null) completions.put(habit.getId(), habit.getCompletions());
+        }
+        if (!completions.isEmpty()) {
+            ArchivedCompletions.layer(completions, archiveRepository.findAllById(List.copyOf(completions.keySet())));
+        }
+        return completions;
+    }
 
-}
+    // Отметки окна [from, to] из горячих строк; у archivedIds под них подкладывается архив
+    private Map<Long, CompletionSet> loadCompletions(Collection<Long> ids, LocalDate from, LocalDate to,
+                                                     Collection<Long> archivedIds) {
+        Map<Long, CompletionSet> completions = habitRepository.loadCompletions(ids, from, to);
+        if (archivedIds.isEmpty()) return completions;
+        Map<Long, CompletionSet> layered = new HashMap<>(completions);
+        ArchivedCompletions.layer(layered, archiveRepository.findAllById(archivedIds));
+        return layered;
+    }
 
+    // блок года из архива; годы, которые свернуть не могли, архив не читают
+    private byte[] archivedYear(Long habitId, int year) {
+        if (!ArchivedCompletions.mayHold(year, LocalDate.now())) return null;
+        return archiveRepository.findById(habitId).map(archive -> archive.years().get(year)).orElse(null);
+    }
+
+    // окна не старше года — всегда в горячей таблице (ArchivedCompletions.MIN_HOT_YEARS)
+    private Map<Long, CompletionSet> recentCompletions(Collection<Long> ids, LocalDate today) {
+        return habitRepository.loadCompletions(ids, today.minusDays(HabitStats.MAX_ROLLING_WINDOW - 1), today);
+    }
+
+    private static int pageSize(Integer limit) {
+        int size = (limit == null) ? DEFAULT_PAGE_SIZE : limit;
+        if (size <= 0) throw new IllegalArgumentException("limit must be positive");
+        return Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    private static Long afterId(String after) {
+        return (after == null || after.isBlank()) ? 0L : HabitPageDTO.decodeCursor(after);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
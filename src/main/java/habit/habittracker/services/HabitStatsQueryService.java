@@ -0,0 +1,209 @@
+package habit.habittracker.services;
+
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.HabitStatsSummaryDTO;
+import habit.habittracker.dto.HabitSummaryDTO;
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.models.CompletionSet;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.repositories.ArchivedCompletionsRepository;
+import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.repositories.HabitSummaryView;
+import habit.habittracker.repositories.HabitVersionView;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+// Статистика сразу по многим привычкам: одна выборка habits + habit_stats + блок текущего года,
+// сущности Habit не создаются. Отметки целиком читаются одним запросом и только у привычек без
+// проекции и у тех, чья текущая серия зависит от отметок "в будущем".
+@Service
+@Timed(value = "habit.service", percentiles = {0.5, 0.95, 0.99}, histogram = true)
+public class HabitStatsQueryService {
+    private final HabitRepository habitRepository;
+    private final HabitStatsRepository habitStatsRepository;
+    private final ArchivedCompletionsRepository archiveRepository;
+    private final CacheManager cacheManager;
+    private final TransactionTemplate transactionTemplate;
+    private final HabitLocks habitLocks;
+    private final CompletionWriteBehind writeBehind;
+    private final HabitMetrics habitMetrics;
+    private final int maxBatchSize;
+    // свой ограниченный пул: пересборка проекций по длинной истории не занимает общий commonPool
+    private final ForkJoinPool statsPool;
+
+    public HabitStatsQueryService(HabitRepository habitRepository, HabitStatsRepository habitStatsRepository,
+                                  ArchivedCompletionsRepository archiveRepository, CacheManager cacheManager, TransactionTemplate transactionTemplate,
+                                  HabitLocks habitLocks, CompletionWriteBehind writeBehind, HabitMetrics habitMetrics,
+                                  @Value("${habit.stats.batch.max-size:200}") int maxBatchSize,
+                                  @Value("${habit.stats.batch.parallelism:4}") int parallelism) {
+        this.habitRepository = habitRepository;
+        this.habitStatsRepository = habitStatsRepository;
+        this.archiveRepository = archiveRepository;
+        this.cacheManager = cacheManager;
+        this.transactionTemplate = transactionTemplate;
+        this.habitLocks = habitLocks;
+        this.writeBehind = writeBehind;
+        this.habitMetrics = habitMetrics;
+        this.maxBatchSize = maxBatchSize;
+        this.statsPool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        statsPool.shutdown();
+    }
+
+    // Сводка для дашборда: строка на каждую привычку, общий процент успеха и сколько сделано сегодня
+    public HabitStatsSummaryDTO getStatsSummary() {
+        writeBehind.flushAll();
+        LocalDate today = LocalDate.now();
+        Collection<Rebuilt> rebuilt = new ConcurrentLinkedQueue<>();
+        List<Computed> computed = transactionTemplate.execute(status ->
+                compute(habitRepository.findSummary(today.getYear()), today, rebuilt));
+        saveRebuilt(rebuilt);
+
+        List<HabitSummaryDTO> items = new ArrayList<>(computed.size());
+        long totalDone = 0;
+        double totalIdeal = 0;
+        int doneToday = 0;
+        for (Computed habit : computed) {
+            HabitStatsDTO stats = habit.stats();
+            items.add(new HabitSummaryDTO(stats.getHabitId(), stats.getTotalDone(), stats.getSuccessRate(),
+                    stats.getCurrentStreak(), stats.getLongestStreak(), habit.doneToday()));
+            totalDone += stats.getTotalDone();
+            totalIdeal += habit.idealCompletions();
+            if (habit.doneToday()) doneToday++;
+        }
+        return new HabitStatsSummaryDTO(HabitStats.successRate(totalDone, totalIdeal), doneToday, items);
+    }
+
+    // То же, что getStats для каждого id, но одним проходом. Ключи ответа идут в порядке запроса,
+    // несуществующие id пропускаются. Готовые значения берутся из кэша habitStatsBatch и кладутся в него:
+    // в них нет скользящих окон, поэтому общий с GET /habits/{id}/stats кэш habitStats не трогаем.
+    public Map<Long, HabitStatsDTO> getStats(List<Long> ids) {
+        List<Long> requested = ids.stream().distinct().toList();
+        if (requested.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Too many ids: " + requested.size() + " (max " + maxBatchSize + ")");
+        }
+        Cache cache = cacheManager.getCache(CacheConfig.HABIT_STATS_BATCH);
+        Map<Long, HabitStatsDTO> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            HabitStatsDTO cached = (cache != null) ? cache.get(id, HabitStatsDTO.class) : null;
+            if (cached != null) found.put(id, cached);
+            else missing.add(id);
+        }
+        if (!missing.isEmpty()) {
+            missing.forEach(writeBehind::flush);
+            LocalDate today = LocalDate.now();
+            Collection<Rebuilt> rebuilt = new ConcurrentLinkedQueue<>();
+            List<Computed> computed = transactionTemplate.execute(status ->
+                    compute(habitRepository.findSummaryByIdIn(missing, today.getYear()), today, rebuilt));
+            saveRebuilt(rebuilt);
+            for (Computed habit : computed) {
+                habitMetrics.statsComputed(habit.stats().getTotalDone());
+                found.put(habit.stats().getHabitId(), habit.stats());
+                if (cache != null) cache.put(habit.stats().getHabitId(), habit.stats());
+            }
+        }
+
+        Map<Long, HabitStatsDTO> result = new LinkedHashMap<>();
+        for (Long id : requested) {
+            HabitStatsDTO stats = found.get(id);
+            if (stats != null) result.put(id, stats);
+        }
+        return result;
+    }
+
+    // недостающие проекции складываются в rebuilt — сохраняет их saveRebuilt после транзакции чтения
+    private List<Computed> compute(List<HabitSummaryView> rows, LocalDate today, Collection<Rebuilt> rebuilt) {
+        Set<Long> needCompletions = new HashSet<>();
+        Set<Long> needArchives = new HashSet<>();
+        for (HabitSummaryView row : rows) {
+            if (row.getTotalDone() == null || toStats(row).currentStreakNeedsCompletions(today)) {
+                needCompletions.add(row.getHabitId());
+                if (row.getArchivedThrough() != null) needArchives.add(row.getHabitId());
+            }
+        }
+        Map<Long, CompletionSet> completions = needCompletions.isEmpty()
+                ? Map.of()
+                : new HashMap<>(habitRepository.loadCompletions(needCompletions, LocalDate.MIN, LocalDate.MAX));
+        // полная история свёрнутых привычек — горячие годы поверх архива, ещё один запрос на всех
+        if (!needArchives.isEmpty()) ArchivedCompletions.layer(completions, archiveRepository.findAllById(needArchives));
+
+        // по каждой привычке считаем независимо; порядок строк parallel stream сохраняет
+        return statsPool.submit(() -> rows.parallelStream()
+                .map(row -> computeOne(row, completions.getOrDefault(row.getHabitId(), new CompletionSet()), today, rebuilt))
+                .toList()).join();
+    }
+
+    // Недостающие проекции сохраняем, чтобы следующий раз обошёлся одним запросом. Вставка идёт под
+    // блокировками привычек, как запись, и только там, где проекции всё ещё нет и версия привычки
+    // не изменилась с чтения: иначе отметки успели поменяться (запись по ключу проекцию не строит),
+    // и такую проекцию построит следующее чтение. Вставку другого экземпляра не перебиваем.
+    private void saveRebuilt(Collection<Rebuilt> rebuilt) {
+        if (rebuilt.isEmpty()) return;
+        Map<Long, Rebuilt> byId = rebuilt.stream().collect(Collectors.toMap(r -> r.stats().getHabitId(), r -> r));
+        try {
+            habitLocks.withLocks(byId.keySet(), () -> transactionTemplate.execute(status -> {
+                Map<Long, Long> versions = habitRepository.findVersionsByIdIn(byId.keySet()).stream()
+                        .collect(Collectors.toMap(HabitVersionView::getId, HabitVersionView::getVersion));
+                byId.values().removeIf(r -> !Objects.equals(versions.get(r.stats().getHabitId()), r.version()));
+                habitStatsRepository.findAllById(byId.keySet()).forEach(existing -> byId.remove(existing.getHabitId()));
+                return habitStatsRepository.saveAll(byId.values().stream().map(Rebuilt::stats).toList());
+            }));
+        } catch (DataIntegrityViolationException e) {
+            // проекция появится при следующем чтении или записи
+        }
+    }
+
+    private static Computed computeOne(HabitSummaryView row, CompletionSet completions, LocalDate today,
+                                       Collection<Rebuilt> rebuilt) {
+        HabitStats stats;
+        if (row.getTotalDone() == null) {
+            stats = HabitStats.of(row.getHabitId(), completions);
+            rebuilt.add(new Rebuilt(stats, row.getVersion()));
+        } else {
+            stats = toStats(row);
+        }
+        double ideal = HabitStats.idealCompletions(row.getCreatedAt(), row.getFrequency(), today);
+        HabitStatsDTO dto = new HabitStatsDTO(row.getHabitId(), stats.getTotalDone(),
+                HabitStats.successRate(stats.getTotalDone(), ideal),
+                stats.currentStreak(today, completions), stats.getLongestStreak());
+        return new Computed(dto, ideal, CompletionSet.contains(row.getYearDays(), today));
+    }
+
+    private static HabitStats toStats(HabitSummaryView row) {
+        return new HabitStats(row.getHabitId(), row.getTotalDone(), row.getLongestStreak(),
+                row.getCurrentStreakStart(), row.getLastCompletion());
+    }
+
+    private record Computed(HabitStatsDTO stats, double idealCompletions, boolean doneToday) {
+    }
+
+    // пересобранная проекция и версия привычки, по отметкам которой она посчитана
+    private record Rebuilt(HabitStats stats, Long version) {
+    }
+}
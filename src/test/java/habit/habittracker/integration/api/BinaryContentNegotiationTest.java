@@ -0,0 +1,120 @@
+package habit.habittracker.integration.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.*;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class BinaryContentNegotiationTest {
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    private final ObjectMapper cbor = new CBORMapper();
+    private final ObjectMapper json = new ObjectMapper();
+
+    private final LocalDate day = LocalDate.of(2025, 3, 10);
+
+    @BeforeEach
+    void setUp() {
+        habitRepository.deleteAll();
+        Habit habit = new Habit();
+        habit.setTitle("Read");
+        habit.setFrequency(1);
+        habit.setCompletedDates(List.of(day, day.plusDays(1), day.plusDays(2)));
+        habitRepository.save(habit);
+    }
+
+    @Test
+    void list_shouldStayJsonByDefault() throws IOException {
+        ResponseEntity<byte[]> response = restTemplate.exchange("/habits", HttpMethod.GET, accept(null), byte[].class);
+
+        assertTrue(MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()));
+        assertEquals("2025-03-10", json.readTree(response.getBody()).get(0).get("completedDates").get(0).asText());
+    }
+
+    @Test
+    void list_shouldEncodeDatesAsEpochDaysInCbor() throws IOException {
+        ResponseEntity<byte[]> binary = restTemplate.exchange("/habits", HttpMethod.GET,
+                accept(MediaType.APPLICATION_CBOR), byte[].class);
+        ResponseEntity<byte[]> text = restTemplate.exchange("/habits", HttpMethod.GET, accept(null), byte[].class);
+
+        assertEquals(MediaType.APPLICATION_CBOR, binary.getHeaders().getContentType());
+        JsonNode dates = cbor.readTree(binary.getBody()).get(0).get("completedDates");
+        assertTrue(dates.get(0).isIntegralNumber());
+        assertEquals(day.toEpochDay(), dates.get(0).asLong());
+        assertTrue(binary.getBody().length < text.getBody().length);
+    }
+
+    @Test
+    void smile_shouldBeNegotiatedToo() throws IOException {
+        ResponseEntity<byte[]> response = restTemplate.exchange("/habits", HttpMethod.GET, accept(SMILE), byte[].class);
+
+        assertTrue(SMILE.isCompatibleWith(response.getHeaders().getContentType()));
+        JsonNode habits = new SmileMapper().readTree(response.getBody());
+        assertEquals(day.toEpochDay(), habits.get(0).get("completedDates").get(0).asLong());
+    }
+
+    @Test
+    void eTag_shouldDependOnNegotiatedFormat() {
+        ResponseEntity<byte[]> text = restTemplate.exchange("/habits", HttpMethod.GET,
+                accept(MediaType.APPLICATION_JSON), byte[].class);
+        String eTag = text.getHeaders().getETag();
+        assertTrue(text.getHeaders().getVary().contains(HttpHeaders.ACCEPT));
+
+        // ETag JSON-ответа не подходит к запросу CBOR: тело отдаётся целиком и в своём формате
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        headers.setIfNoneMatch(eTag);
+        ResponseEntity<byte[]> binary = restTemplate.exchange("/habits", HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+
+        assertEquals(HttpStatus.OK, binary.getStatusCode());
+        assertEquals(MediaType.APPLICATION_CBOR, binary.getHeaders().getContentType());
+        assertNotEquals(eTag, binary.getHeaders().getETag());
+    }
+
+    @Test
+    void checkIn_shouldAcceptCborBodyWithEpochDay() throws IOException {
+        Long id = habitRepository.findAll().get(0).getId();
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_CBOR);
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        byte[] body = cbor.writeValueAsBytes(List.of(Map.of("habitId", id, "date", day.plusDays(5).toEpochDay(), "done", true)));
+
+        ResponseEntity<byte[]> response = restTemplate.exchange("/habits/check-in", HttpMethod.POST,
+                new HttpEntity<>(body, headers), byte[].class);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        String completions = restTemplate.getForObject("/habits/{id}/completions?from=2025-03-01&to=2025-03-31",
+                String.class, id);
+        assertTrue(completions.contains("2025-03-15"));
+    }
+
+    private static HttpEntity<Void> accept(MediaType type) {
+        HttpHeaders headers = new HttpHeaders();
+        if (type != null) headers.setAccept(List.of(type));
+        return new HttpEntity<>(headers);
+    }
+}
@@ -0,0 +1,57 @@
+package habit.habittracker.integration.api;
+
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureObservability(tracing = false)
+@ActiveProfiles("test")
+class MetricsEndpointTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Test
+    void prometheus_shouldExposeServiceTimersAndSqlCounts() {
+        Habit habit = new Habit();
+        habit.setTitle("Metrics");
+        habit.setFrequency(1);
+        habit.setCompletedDates(List.of(LocalDate.now()));
+        Long id = habitRepository.save(habit).getId();
+
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/habits/{id}/stats", String.class, id).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/habits/export", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.postForEntity("/habits:bulk",
+                List.of(Map.of("title", "Imported", "frequency", 1)), String.class).getStatusCode());
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String body = scrape.getBody();
+        assertTrue(body.contains("habit_service_seconds_count{") && body.contains("method=\"getStats\""));
+        assertTrue(body.contains("habit_stats_completions_count"));
+        assertTrue(body.contains("habit_stats_database_loads_total"));
+        assertTrue(body.contains("http_server_requests_sql_count{") && body.contains("uri=\"/habits/{id}/stats\""));
+        assertTrue(body.lines().anyMatch(line ->
+                line.startsWith("http_server_requests_sql_count{") && line.contains("uri=\"/habits:bulk\"")));
+        // выгрузка пишет тело в потоке исполнителя — её запросы тоже посчитаны
+        assertTrue(body.lines().anyMatch(line -> line.startsWith("http_server_requests_sql_sum{")
+                && line.contains("uri=\"/habits/export\"") && Double.parseDouble(line.substring(line.lastIndexOf(' ') + 1)) > 0));
+    }
+}
@@ -0,0 +1,43 @@
+package habit.habittracker.integration.api;
+
+import habit.habittracker.HabitTrackerApplication;
+import org.apache.tomcat.util.threads.VirtualThreadExecutor;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Профиль virtual-threads переключает Tomcat на виртуальные потоки, без профиля — обычный пул.
+// Каждый режим поднимается отдельным приложением на своей in-memory базе.
+// Пропускную способность режимов сравнивает ./gradlew loadTest [-Ploadtest.profiles=virtual-threads].
+class ThreadModeComparisonTest {
+
+    @Test
+    void virtualThreadProfile_shouldServeRequestsOnVirtualThreads() {
+        try (ConfigurableApplicationContext context = start(true)) {
+            assertInstanceOf(VirtualThreadExecutor.class, tomcatExecutor(context));
+        }
+        try (ConfigurableApplicationContext context = start(false)) {
+            assertFalse(tomcatExecutor(context) instanceof VirtualThreadExecutor);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(boolean virtualThreads) {
+        String mode = virtualThreads ? "virtual-threads" : "platform-threads";
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(HabitTrackerApplication.class);
+        if (virtualThreads) builder.profiles("virtual-threads");
+        return builder
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + mode + ";DB_CLOSE_DELAY=-1",
+                        "spring.jpa.show-sql=false")
+                .run();
+    }
+
+    private static Object tomcatExecutor(ConfigurableApplicationContext context) {
+        TomcatWebServer server = (TomcatWebServer) ((ServletWebServerApplicationContext) context).getWebServer();
+        return server.getTomcat().getConnector().getProtocolHandler().getExecutor();
+    }
+}
@@ -0,0 +1,111 @@
+package habit.habittracker.integration.cache;
+
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class HabitStatsCacheTest {
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private HabitStatsQueryService habitStatsQueryService;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    private Cache cache;
+    private Long habitId;
+
+    @BeforeEach
+    void setUp() {
+        cache = cacheManager.getCache(CacheConfig.HABIT_STATS);
+        cache.clear();
+        cacheManager.getCache(CacheConfig.HABIT_STATS_BATCH).clear();
+        Habit habit = new Habit();
+        habit.setTitle("Cached");
+        habit.setFrequency(1);
+        habitId = habitRepository.save(habit).getId();
+    }
+
+    @Test
+    void getStats_shouldBeServedFromCacheUntilWrite() {
+        HabitStatsDTO first = habitService.getStats(habitId);
+        assertSame(first, habitService.getStats(habitId));
+        assertNotNull(cache.get(habitId));
+
+        habitService.markHabitDone(habitId, LocalDate.now());
+
+        assertNull(cache.get(habitId));
+        assertEquals(1, habitService.getStats(habitId).getTotalDone());
+    }
+
+    @Test
+    void writes_shouldEvictOnlyTheirOwnHabit() {
+        Habit other = new Habit();
+        other.setTitle("Other");
+        Long otherId = habitRepository.save(other).getId();
+        habitService.getStats(habitId);
+        habitService.getStats(otherId);
+
+        habitService.toggleHabitDone(otherId, LocalDate.now());
+
+        assertNotNull(cache.get(habitId));
+        assertNull(cache.get(otherId));
+    }
+
+    @Test
+    void getStats_shouldKeepRollingAfterBatchRead() {
+        HabitStatsDTO batch = habitStatsQueryService.getStats(List.of(habitId)).get(habitId);
+        assertNull(batch.getRolling());
+        assertNull(cache.get(habitId)); // пакет пишет только в свой кэш
+
+        assertNotNull(habitService.getStats(habitId).getRolling());
+
+        habitService.markHabitDone(habitId, LocalDate.now());
+
+        assertNull(cacheManager.getCache(CacheConfig.HABIT_STATS_BATCH).get(habitId));
+        assertEquals(1, habitStatsQueryService.getStats(List.of(habitId)).get(habitId).getTotalDone());
+    }
+
+    @Test
+    void deleteHabit_shouldEvictStats() {
+        habitService.getStats(habitId);
+
+        habitService.deleteHabit(habitId);
+
+        assertNull(cache.get(habitId));
+    }
+
+    @Test
+    void checkIn_shouldEvictEveryTouchedHabit() {
+        habitService.getStats(habitId);
+
+        habitService.checkIn(List.of(new CheckInDTO(habitId, LocalDate.now(), true)));
+
+        assertNull(cache.get(habitId));
+        assertEquals(1, habitService.getStats(habitId).getTotalDone());
+    }
+}
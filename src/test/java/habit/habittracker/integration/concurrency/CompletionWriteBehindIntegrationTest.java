@@ -0,0 +1,97 @@
+package habit.habittracker.integration.concurrency;
+
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.services.CompletionWriteBehind;
+import habit.habittracker.services.HabitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Таймер выставлен в час: в БД очередь попадает только тогда, когда тест этого просит
+@SpringBootTest(properties = {
+        "habit.write-behind.enabled=true",
+        "habit.write-behind.flush-interval=1h"
+})
+@ActiveProfiles("test")
+class CompletionWriteBehindIntegrationTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private CompletionWriteBehind writeBehind;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long habitId;
+
+    @BeforeEach
+    void setUp() {
+        writeBehind.flushAll();
+        Habit habit = new Habit();
+        habit.setTitle("Queued");
+        habit.setFrequency(7);
+        habitId = habitRepository.save(habit).getId();
+    }
+
+    @Test
+    void queuedCheckIn_shouldBeVisibleToReadsBeforeFlush() {
+        habitService.checkIn(List.of(new CheckInDTO(habitId, DAY, true)));
+
+        assertTrue(storedDates().isEmpty());
+        assertEquals(List.of(DAY), find(habitService.getAllHabits()).getCompletedDates());
+        assertEquals(List.of(DAY), find(habitService.getHabitsPage(null, 500).getItems()).getCompletedDates());
+    }
+
+    @Test
+    void markHabitDone_shouldAnswerFromQueue() {
+        HabitDTO result = habitService.markHabitDone(habitId, DAY);
+
+        assertEquals(List.of(DAY), result.getCompletedDates());
+        assertTrue(storedDates().isEmpty());
+    }
+
+    @Test
+    void getStats_shouldFlushHabitFirst() {
+        habitService.checkIn(List.of(new CheckInDTO(habitId, DAY, true), new CheckInDTO(habitId, DAY.plusDays(1), true)));
+
+        assertEquals(2, habitService.getStats(habitId).getTotalDone());
+        assertEquals(List.of(DAY, DAY.plusDays(1)), storedDates());
+    }
+
+    @Test
+    void stop_shouldDrainQueue() {
+        habitService.checkIn(List.of(new CheckInDTO(habitId, DAY, true)));
+
+        writeBehind.stop();
+        writeBehind.start();
+
+        assertEquals(0, writeBehind.size());
+        assertEquals(List.of(DAY), storedDates());
+    }
+
+    private HabitDTO find(List<HabitDTO> habits) {
+        return habits.stream().filter(habit -> habit.getId().equals(habitId)).findFirst().orElseThrow();
+    }
+
+    private List<LocalDate> storedDates() {
+        return transactionTemplate.execute(status ->
+                habitRepository.findById(habitId).orElseThrow().getCompletedDates());
+    }
+}
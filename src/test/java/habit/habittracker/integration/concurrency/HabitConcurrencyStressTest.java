@@ -0,0 +1,130 @@
+package habit.habittracker.integration.concurrency;
+
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.services.HabitService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Параллельные отметки одной привычки: ни одна не должна потеряться.
+// Пропускную способность записей меряет ./gradlew loadTest, не этот тест.
+@SpringBootTest
+@ActiveProfiles("test")
+class HabitConcurrencyStressTest {
+    private static final int THREADS = 8;
+    private static final int MARKS_PER_THREAD = 40;
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private HabitStatsRepository habitStatsRepository;
+
+    @Test
+    void concurrentMarksOnSameHabit_shouldNotLoseUpdates() throws Exception {
+        Long habitId = newHabit("Contended");
+
+        // у каждого потока свои даты, все вместе — одна непрерывная серия
+        runConcurrently((thread, i) ->
+                habitService.markHabitDone(habitId, START.plusDays((long) thread * MARKS_PER_THREAD + i)));
+
+        int expected = THREADS * MARKS_PER_THREAD;
+        HabitStatsDTO stats = habitService.getStats(habitId);
+        assertEquals(expected, stats.getTotalDone());
+        assertEquals(expected, stats.getLongestStreak());
+        assertEquals(expected, completedDays(habitId));
+    }
+
+    @Test
+    void concurrentCheckInsOnOverlappingHabits_shouldNotLoseUpdatesOrDeadlock() throws Exception {
+        Long first = newHabit("First");
+        Long second = newHabit("Second");
+
+        // потоки перечисляют привычки в разном порядке
+        runConcurrently((thread, i) -> {
+            LocalDate date = START.plusDays((long) thread * MARKS_PER_THREAD + i);
+            List<Long> order = (thread % 2 == 0) ? List.of(first, second) : List.of(second, first);
+            habitService.checkIn(order.stream().map(id -> new CheckInDTO(id, date, true)).toList());
+        });
+
+        int expected = THREADS * MARKS_PER_THREAD;
+        assertEquals(expected, completedDays(first));
+        assertEquals(expected, completedDays(second));
+        assertEquals(expected, habitService.getStats(first).getTotalDone());
+        assertEquals(expected, habitService.getStats(second).getTotalDone());
+    }
+
+    @Test
+    void concurrentReadsAndMarksWithoutProjection_shouldInsertItOnce() throws Exception {
+        Long habitId = newHabit("Lazy"); // проекции habit_stats ещё нет
+
+        // чётные потоки отмечают, нечётные читают статистику и пересобирают проекцию
+        runConcurrently((thread, i) -> {
+            if (thread % 2 == 0) habitService.markHabitDone(habitId, START.plusDays((long) thread * MARKS_PER_THREAD + i));
+            else habitService.getStats(habitId);
+        });
+
+        int expected = THREADS / 2 * MARKS_PER_THREAD;
+        assertEquals(expected, completedDays(habitId));
+        assertEquals(expected, habitStatsRepository.findById(habitId).orElseThrow().getTotalDone());
+    }
+
+    private Long newHabit(String title) {
+        Habit habit = new Habit();
+        habit.setTitle(title);
+        habit.setFrequency(7);
+        return habitRepository.save(habit).getId();
+    }
+
+    private int completedDays(Long habitId) {
+        return habitService.getAllHabits().stream()
+                .filter(habit -> habit.getId().equals(habitId))
+                .findFirst().orElseThrow()
+                .getCompletedDates().size();
+    }
+
+    private void runConcurrently(Operation operation) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < MARKS_PER_THREAD; i++) operation.run(thread, i);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) future.get(60, TimeUnit.SECONDS);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Operation {
+        void run(int thread, int index);
+    }
+}
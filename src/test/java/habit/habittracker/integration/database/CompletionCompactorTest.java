@@ -0,0 +1,152 @@
+package habit.habittracker.integration.database;
+
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.HabitSummaryDTO;
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.ArchivedCompletionsRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.services.CompletionCompactor;
+import habit.habittracker.services.CompletionWriteBehind;
+import habit.habittracker.services.HabitLocks;
+import habit.habittracker.services.HabitMetrics;
+import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({CompletionCompactor.class, HabitService.class, HabitStatsQueryService.class, HabitLocks.class,
+        HabitMetrics.class, CompletionWriteBehind.class, CacheConfig.class})
+class CompletionCompactorTest {
+
+    private static final LocalDate TODAY = LocalDate.now();
+    private static final int YEAR = TODAY.getYear();
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CompletionCompactor compactor;
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private HabitStatsQueryService habitStatsQueryService;
+
+    @Autowired
+    private HabitStatsRepository habitStatsRepository;
+
+    @Autowired
+    private ArchivedCompletionsRepository archiveRepository;
+
+    private Habit habit;
+
+    @BeforeEach
+    void setUp() {
+        habit = new Habit();
+        habit.setTitle("Old habit");
+        habit.setFrequency(1);
+        habit.setCreatedAt(LocalDate.of(YEAR - 6, 1, 1).atStartOfDay());
+        // серия из четырёх дней пересекает границу архива
+        habit.setCompletedDates(List.of(LocalDate.of(YEAR - 5, 3, 1), LocalDate.of(YEAR - 5, 3, 2),
+                LocalDate.of(YEAR - 2, 12, 30), LocalDate.of(YEAR - 2, 12, 31),
+                LocalDate.of(YEAR - 1, 1, 1), LocalDate.of(YEAR - 1, 1, 2), TODAY));
+        habit = entityManager.persistAndFlush(habit);
+        entityManager.clear();
+    }
+
+    @Test
+    void compact_shouldMoveOldYearsToArchiveAndKeepReadsExact() {
+        List<LocalDate> dates = habitService.getAllHabits().get(0).getCompletedDates();
+        HabitStatsDTO weekly = habitService.getWeeklyStats(habit.getId());
+
+        assertEquals(1, compact());
+
+        assertEquals(2, hotRows());
+        ArchivedCompletions archive = archiveRepository.findById(habit.getId()).orElseThrow();
+        assertEquals(YEAR - 5, archive.getFirstYear());
+        assertEquals(YEAR - 2, archive.getLastYear());
+        assertEquals(dates, habitService.getAllHabits().get(0).getCompletedDates());
+        assertEquals(dates, habitService.getHabitsPage(null, 10).getItems().get(0).getCompletedDates());
+        assertEquals(dates, habitService.getCompletions(habit.getId(), LocalDate.of(YEAR - 6, 1, 1), TODAY));
+        assertEquals(2, habitService.getHeatmap(habit.getId(), YEAR - 5).getTotal());
+        HabitStatsDTO weeklyAfter = habitService.getWeeklyStats(habit.getId());
+        assertEquals(weekly.getTotalDone(), weeklyAfter.getTotalDone());
+        assertEquals(weekly.getLongestStreak(), weeklyAfter.getLongestStreak());
+        assertEquals(weekly.getSuccessRate(), weeklyAfter.getSuccessRate());
+
+        // проекция пересобирается по горячим годам поверх архива
+        habitStatsRepository.deleteAll();
+        entityManager.flush();
+        entityManager.clear();
+        HabitSummaryDTO summary = habitStatsQueryService.getStatsSummary().getItems().get(0);
+        assertEquals(dates.size(), summary.getTotalDone());
+        assertEquals(4, summary.getLongestStreak());
+
+        assertEquals(0, compact()); // горячих старых лет больше нет
+    }
+
+    @Test
+    void writes_shouldEditArchivedYearsAndFoldBackOnNextCompaction() {
+        compact();
+
+        habitService.toggleHabitDone(habit.getId(), LocalDate.of(YEAR - 5, 3, 2));
+        habitService.markHabitDone(habit.getId(), LocalDate.of(YEAR - 5, 6, 1));
+        habitService.checkIn(List.of(new CheckInDTO(habit.getId(), LocalDate.of(YEAR - 2, 12, 31), false)));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<LocalDate> expected = List.of(LocalDate.of(YEAR - 5, 3, 1), LocalDate.of(YEAR - 5, 6, 1),
+                LocalDate.of(YEAR - 2, 12, 30), LocalDate.of(YEAR - 1, 1, 1), LocalDate.of(YEAR - 1, 1, 2), TODAY);
+        assertEquals(expected, habitService.getAllHabits().get(0).getCompletedDates());
+        assertEquals(4, hotRows()); // правленые архивные годы лежат горячими строками поверх архива
+
+        assertEquals(1, compact());
+
+        assertEquals(2, hotRows());
+        assertEquals(expected, habitService.getAllHabits().get(0).getCompletedDates());
+    }
+
+    @Test
+    void compact_shouldSkipHabitsWithOnlyRecentYears() {
+        Habit recent = new Habit();
+        recent.setTitle("New habit");
+        recent.setCompletedDates(List.of(LocalDate.of(YEAR - 1, 6, 1), TODAY));
+        recent = entityManager.persistAndFlush(recent);
+
+        assertEquals(1, compact());
+
+        assertTrue(archiveRepository.findById(recent.getId()).isEmpty());
+        assertNull(entityManager.find(Habit.class, recent.getId()).getArchivedThrough());
+    }
+
+    // свёртка пишет мимо контекста персистентности — после неё читаем заново
+    private int compact() {
+        int compacted = compactor.compact(TODAY);
+        entityManager.flush();
+        entityManager.clear();
+        return compacted;
+    }
+
+    private int hotRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM habit_completion_years WHERE habit_id = ?",
+                Integer.class, habit.getId());
+    }
+}
@@ -28,8 +28,8 @@ class HabitPersistenceTest {
         // given
         Habit habit = new Habit();
         habit.setTitle("Habit with completions");
-        habit.getCompletedDates().add(LocalDate.now());
-        habit.getCompletedDates().add(LocalDate.now().minusDays(1));
+        habit.getCompletions().add(LocalDate.now());
+        habit.getCompletions().add(LocalDate.now().minusDays(1));
 
         // when
         Habit saved = habitRepository.save(habit);
@@ -42,6 +42,56 @@ class HabitPersistenceTest {
         assertTrue(found.getCompletedDates().contains(LocalDate.now()));
     }
 
+    @Test
+    void shouldStoreOneBitmapRowPerYear() {
+        // given
+        Habit habit = new Habit();
+        habit.setTitle("Multi-year habit");
+        habit.setCompletedDates(List.of(
+                LocalDate.of(2023, 12, 30),
+                LocalDate.of(2023, 12, 31),
+                LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 12, 31)));
+
+        // when
+        Habit saved = habitRepository.save(habit);
+        entityManager.flush();
+        entityManager.clear();
+
+        // then
+        Number rows = (Number) entityManager.getEntityManager()
+                .createNativeQuery("SELECT COUNT(*) FROM habit_completion_years WHERE habit_id = :id")
+                .setParameter("id", saved.getId())
+                .getSingleResult();
+        assertEquals(2, rows.intValue());
+
+        Habit found = habitRepository.findById(saved.getId()).orElseThrow();
+        assertEquals(List.of(
+                LocalDate.of(2023, 12, 30),
+                LocalDate.of(2023, 12, 31),
+                LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 12, 31)), found.getCompletedDates());
+    }
+
+    @Test
+    void shouldDropYearRowWhenLastDateRemoved() {
+        // given
+        Habit habit = new Habit();
+        habit.setTitle("Toggle habit");
+        habit.getCompletions().add(LocalDate.of(2023, 5, 1));
+        habit.getCompletions().add(LocalDate.of(2024, 5, 1));
+        Habit saved = entityManager.persistAndFlush(habit);
+
+        // when
+        saved.getCompletions().remove(LocalDate.of(2023, 5, 1));
+        entityManager.flush();
+        entityManager.clear();
+
+        // then
+        Habit found = habitRepository.findById(saved.getId()).orElseThrow();
+        assertEquals(List.of(LocalDate.of(2024, 5, 1)), found.getCompletedDates());
+    }
+
     @Test
     void shouldUpdateHabitProperties() {
         // given
@@ -67,7 +117,7 @@ class HabitPersistenceTest {
         // given
         Habit habit = new Habit();
         habit.setTitle("Test Habit");
-        habit.getCompletedDates().add(LocalDate.now());
+        habit.getCompletions().add(LocalDate.now());
         Habit saved = entityManager.persistAndFlush(habit);
 
         // when
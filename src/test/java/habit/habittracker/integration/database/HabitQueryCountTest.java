@@ -0,0 +1,106 @@
+package habit.habittracker.integration.database;
+
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitPageDTO;
+import habit.habittracker.dto.HabitStatsSummaryDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.services.CompletionWriteBehind;
+import habit.habittracker.services.HabitLocks;
+import habit.habittracker.services.HabitMetrics;
+import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
+import habit.habittracker.support.SqlStatementCounter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import({HabitService.class, HabitStatsQueryService.class, HabitLocks.class, HabitMetrics.class,
+        CompletionWriteBehind.class, CacheConfig.class})
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=habit.habittracker.support.SqlStatementCounter")
+class HabitQueryCountTest {
+
+    // не зависит от числа привычек
+    private static final int MAX_QUERIES_PER_LIST_READ = 2;
+    private static final int HABITS = 30;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private HabitService habitService;
+
+    @Autowired
+    private HabitStatsQueryService habitStatsQueryService;
+
+    @BeforeEach
+    void setUp() {
+        LocalDate day = LocalDate.of(2023, 12, 30);
+        for (int i = 0; i < HABITS; i++) {
+            Habit habit = new Habit();
+            habit.setTitle("Habit " + i);
+            habit.setCompletedDates(List.of(day, day.plusDays(2), day.plusDays(i)));
+            entityManager.persist(habit);
+        }
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementCounter.reset();
+    }
+
+    @Test
+    void getAllHabits_shouldNotIssueQueryPerHabit() {
+        List<HabitDTO> habits = habitService.getAllHabits();
+
+        assertEquals(HABITS, habits.size());
+        assertTrue(habits.stream().allMatch(h -> h.getCompletedDates().size() >= 2));
+        assertTrue(SqlStatementCounter.count() <= MAX_QUERIES_PER_LIST_READ,
+                "getAllHabits issued " + SqlStatementCounter.count() + " statements");
+    }
+
+    @Test
+    void getHabitsPage_shouldNotIssueQueryPerHabit() {
+        HabitPageDTO page = habitService.getHabitsPage(null, 20);
+
+        assertEquals(20, page.getItems().size());
+        assertTrue(page.getItems().stream().allMatch(h -> h.getCompletedDates().size() >= 2));
+        assertTrue(SqlStatementCounter.count() <= MAX_QUERIES_PER_LIST_READ,
+                "getHabitsPage issued " + SqlStatementCounter.count() + " statements");
+    }
+
+    @Test
+    void exportHabits_shouldNotIssueQueryPerHabit() {
+        List<HabitDTO> exported = new ArrayList<>();
+        habitService.exportHabits(exported::add);
+
+        assertEquals(HABITS, exported.size());
+        assertTrue(exported.stream().allMatch(h -> h.getCompletedDates().size() >= 2));
+        assertTrue(SqlStatementCounter.count() <= MAX_QUERIES_PER_LIST_READ,
+                "exportHabits issued " + SqlStatementCounter.count() + " statements");
+    }
+
+    @Test
+    void getStatsSummary_shouldIssueSingleQueryOnceProjectionsExist() {
+        habitStatsQueryService.getStatsSummary(); // заодно строит недостающие проекции habit_stats
+        entityManager.flush();
+        entityManager.clear();
+        SqlStatementCounter.reset();
+
+        HabitStatsSummaryDTO summary = habitStatsQueryService.getStatsSummary();
+
+        assertEquals(HABITS, summary.getHabits().size());
+        assertEquals(1, SqlStatementCounter.count(),
+                "getStatsSummary issued " + SqlStatementCounter.count() + " statements");
+    }
+}
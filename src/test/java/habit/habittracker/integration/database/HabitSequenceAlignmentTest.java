@@ -0,0 +1,41 @@
+package habit.habittracker.integration.database;
+
+import habit.habittracker.config.HabitSequenceAlignment;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(HabitSequenceAlignment.class)
+class HabitSequenceAlignmentTest {
+
+    @Autowired
+    private HabitSequenceAlignment alignment;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Test
+    void align_shouldMoveSequencePastIdsLeftByIdentityColumn() {
+        // given: строка, вставленная ещё со старым IDENTITY id
+        jdbcTemplate.update("INSERT INTO habits (id, title) VALUES (?, ?)", 10_000L, "Legacy");
+
+        // when
+        assertTrue(alignment.align());
+        assertFalse(alignment.align()); // второй запуск ничего не меняет
+
+        // then
+        Habit habit = new Habit();
+        habit.setTitle("New");
+        assertTrue(habitRepository.saveAndFlush(habit).getId() > 10_000L);
+    }
+}
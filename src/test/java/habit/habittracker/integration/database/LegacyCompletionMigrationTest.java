@@ -0,0 +1,74 @@
+package habit.habittracker.integration.database;
+
+import habit.habittracker.config.LegacyCompletionMigration;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(LegacyCompletionMigration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // DDL в H2 всё равно коммитит транзакцию
+class LegacyCompletionMigrationTest {
+
+    @Autowired
+    private LegacyCompletionMigration migration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + LegacyCompletionMigration.LEGACY_TABLE);
+        habitRepository.deleteAll();
+    }
+
+    @Test
+    void migrate_shouldFoldLegacyRowsIntoYearBitmapsAndDropTable() {
+        // given
+        Habit habit = new Habit();
+        habit.setTitle("Legacy");
+        habit.setCompletedDates(List.of(LocalDate.of(2024, 1, 1)));
+        habit = habitRepository.save(habit);
+
+        jdbcTemplate.execute("CREATE TABLE " + LegacyCompletionMigration.LEGACY_TABLE + " (habit_id BIGINT, done_date DATE)");
+        for (LocalDate date : List.of(LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1))) {
+            jdbcTemplate.update("INSERT INTO " + LegacyCompletionMigration.LEGACY_TABLE + " VALUES (?, ?)", habit.getId(), date);
+        }
+
+        // when
+        int migrated = migration.migrate();
+
+        // then
+        assertEquals(1, migrated);
+        Long id = habit.getId();
+        List<LocalDate> dates = new TransactionTemplate(transactionManager)
+                .execute(status -> habitRepository.findById(id).orElseThrow().getCompletedDates());
+        assertEquals(List.of(LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 2)), dates);
+        assertEquals(0, migration.migrate()); // старой таблицы больше нет
+    }
+
+    @Test
+    void migrate_shouldDoNothingWithoutLegacyTable() {
+        assertEquals(0, migration.migrate());
+    }
+}
@@ -0,0 +1,56 @@
+package habit.habittracker.layered.service;
+
+import habit.habittracker.dto.BulkImportResultDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.models.Habit;
+import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.services.HabitImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+@Import(HabitImportService.class)
+@TestPropertySource(properties = "habit.import.chunk-size=7")
+class HabitImportServiceLayerTest {
+
+    @Autowired
+    private HabitImportService habitImportService;
+
+    @Autowired
+    private HabitRepository habitRepository;
+
+    @Test
+    void importHabits_shouldPersistAllHabitsAcrossChunks() {
+        LocalDate day = LocalDate.of(2024, 1, 1);
+        List<HabitDTO> habits = IntStream.range(0, 20)
+                .mapToObj(i -> new HabitDTO(1000L + i, "Habit " + i, "Imported", 1, null, List.of(day, day.plusDays(i))))
+                .collect(Collectors.toList());
+
+        BulkImportResultDTO result = habitImportService.importHabits(habits);
+
+        assertEquals(20, result.getImported());
+        assertEquals(20, new HashSet<>(result.getIds()).size());
+        assertEquals(20, habitRepository.count());
+        Habit last = habitRepository.findById(result.getIds().get(19)).orElseThrow();
+        assertEquals("Habit 19", last.getTitle());
+        assertEquals(List.of(day, day.plusDays(19)), last.getCompletedDates());
+    }
+
+    @Test
+    void importHabits_shouldHandleEmptyList() {
+        BulkImportResultDTO result = habitImportService.importHabits(List.of());
+        assertEquals(0, result.getImported());
+        assertTrue(result.getIds().isEmpty());
+    }
+}
@@ -1,10 +1,24 @@
 package habit.habittracker.layered.service;
 
+import habit.habittracker.config.CacheConfig;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.CheckInResultDTO;
+import habit.habittracker.dto.CompletionBatchDTO;
 import habit.habittracker.dto.HabitDTO;
 import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.HabitStatsSummaryDTO;
+import habit.habittracker.dto.HabitSummaryDTO;
+import habit.habittracker.dto.RollingRatesDTO;
 import habit.habittracker.models.Habit;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.models.StreakEngine;
 import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.services.CompletionWriteBehind;
+import habit.habittracker.services.HabitLocks;
+import habit.habittracker.services.HabitMetrics;
 import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,12 +30,18 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
-@Import(HabitService.class)
+@Import({HabitService.class, HabitStatsQueryService.class, HabitLocks.class, HabitMetrics.class,
+        CompletionWriteBehind.class, CacheConfig.class})
 class HabitServiceLayerTest {
 
     @Autowired
@@ -33,6 +53,12 @@ class HabitServiceLayerTest {
     @Autowired
     private HabitService habitService;
 
+    @Autowired
+    private HabitStatsQueryService habitStatsQueryService;
+
+    @Autowired
+    private HabitStatsRepository habitStatsRepository;
+
     private Habit habit;
 
     @BeforeEach
@@ -69,6 +95,22 @@ class HabitServiceLayerTest {
         assertTrue(result.stream().anyMatch(h -> h.getTitle().equals("Test")));
     }
 
+    @Test
+    void exportHabits_shouldStreamAllHabitsInIdOrder() {
+        Habit h2 = new Habit();
+        h2.setTitle("Second");
+        h2.setCompletedDates(List.of(LocalDate.now()));
+        entityManager.persistAndFlush(h2);
+
+        List<HabitDTO> exported = new ArrayList<>();
+        habitService.exportHabits(exported::add);
+
+        assertEquals(2, exported.size());
+        assertEquals(habit.getId(), exported.get(0).getId());
+        assertEquals("Second", exported.get(1).getTitle());
+        assertEquals(List.of(LocalDate.now()), exported.get(1).getCompletedDates());
+    }
+
     @Test
     void updateHabit_shouldUpdateExistingHabit() {
         Habit update = new Habit();
@@ -173,4 +215,198 @@ class HabitServiceLayerTest {
 
         assertThrows(RuntimeException.class, () -> habitService.getStats(999L));
     }
+
+    @Test
+    void markAndToggle_shouldKeepStatsProjectionInSync() {
+        LocalDate today = LocalDate.now();
+        habitService.markHabitDone(habit.getId(), today.minusDays(2));
+        habitService.markHabitDone(habit.getId(), today.minusDays(1));
+        habitService.markHabitDone(habit.getId(), today);
+        habitService.toggleHabitDone(habit.getId(), today.minusDays(1));
+
+        HabitStats stored = habitStatsRepository.findById(habit.getId()).orElseThrow();
+        assertEquals(2, stored.getTotalDone());
+        assertEquals(1, stored.getLongestStreak());
+        assertEquals(today, stored.getCurrentStreakStart());
+
+        HabitStatsDTO stats = habitService.getStats(habit.getId());
+        assertEquals(2, stats.getTotalDone());
+        assertEquals(1, stats.getCurrentStreak());
+        assertEquals(1, stats.getLongestStreak());
+    }
+
+    @Test
+    void deleteHabit_shouldRemoveStatsProjection() {
+        habitService.markHabitDone(habit.getId(), LocalDate.now());
+        assertTrue(habitStatsRepository.existsById(habit.getId()));
+
+        habitService.deleteHabit(habit.getId());
+
+        assertFalse(habitStatsRepository.existsById(habit.getId()));
+    }
+
+    @Test
+    void applyCompletions_shouldBackfillAndRemoveInOneCall() {
+        LocalDate today = LocalDate.now();
+        habitService.markHabitDone(habit.getId(), today);
+        Set<LocalDate> year = Stream.iterate(today.minusDays(365), d -> d.plusDays(1)).limit(365)
+                .collect(Collectors.toSet());
+
+        HabitDTO result = habitService.applyCompletions(habit.getId(), new CompletionBatchDTO(year, Set.of(today)));
+
+        assertEquals(365, result.getCompletedDates().size());
+        assertFalse(result.getCompletedDates().contains(today));
+        HabitStatsDTO stats = habitService.getStats(habit.getId());
+        assertEquals(365, stats.getTotalDone());
+        assertEquals(365, stats.getLongestStreak());
+        // сегодня снято, но серия до вчера ещё текущая
+        assertEquals(365, stats.getCurrentStreak());
+    }
+
+    @Test
+    void applyCompletions_shouldRejectConflictingDates() {
+        LocalDate today = LocalDate.now();
+        assertThrows(IllegalArgumentException.class, () -> habitService.applyCompletions(habit.getId(),
+                new CompletionBatchDTO(Set.of(today), Set.of(today))));
+    }
+
+    @Test
+    void checkIn_shouldApplyEntriesAcrossHabitsAndReportFailuresPerEntry() {
+        Habit second = new Habit();
+        second.setTitle("Second");
+        second.setCompletedDates(List.of(LocalDate.now()));
+        second = entityManager.persistAndFlush(second);
+        LocalDate today = LocalDate.now();
+
+        List<CheckInResultDTO> results = habitService.checkIn(List.of(
+                new CheckInDTO(habit.getId(), today, true),
+                new CheckInDTO(999L, today, true),
+                new CheckInDTO(second.getId(), today, false)));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+
+        entityManager.flush();
+        entityManager.clear();
+        assertEquals(List.of(today), habitRepository.findById(habit.getId()).orElseThrow().getCompletedDates());
+        assertTrue(habitRepository.findById(second.getId()).orElseThrow().getCompletedDates().isEmpty());
+        assertEquals(1, habitService.getStats(habit.getId()).getCurrentStreak());
+        assertEquals(0, habitService.getStats(second.getId()).getTotalDone());
+    }
+
+    @Test
+    void getCompletions_shouldReturnOnlyWindow() {
+        habit.setCompletedDates(List.of(LocalDate.of(2020, 1, 1), LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31),
+                LocalDate.of(2025, 4, 1)));
+        entityManager.persistAndFlush(habit);
+        entityManager.clear();
+
+        assertEquals(List.of(LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)),
+                habitService.getCompletions(habit.getId(), LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)));
+        assertThrows(IllegalArgumentException.class,
+                () -> habitService.getCompletions(habit.getId(), LocalDate.of(2025, 4, 1), LocalDate.of(2025, 3, 1)));
+        assertThrows(RuntimeException.class,
+                () -> habitService.getCompletions(999L, LocalDate.of(2025, 3, 1), LocalDate.of(2025, 3, 31)));
+    }
+
+    @Test
+    void getHabitsPage_shouldLimitCompletionsToWindow() {
+        habit.setCompletedDates(List.of(LocalDate.of(2020, 1, 1), LocalDate.of(2025, 3, 10)));
+        entityManager.persistAndFlush(habit);
+        entityManager.clear();
+
+        HabitDTO item = habitService.getHabitsPage(null, 10, LocalDate.of(2025, 1, 1), null).getItems().stream()
+                .filter(dto -> dto.getId().equals(habit.getId())).findFirst().orElseThrow();
+
+        assertEquals(List.of(LocalDate.of(2025, 3, 10)), item.getCompletedDates());
+    }
+
+    @Test
+    void getStatsSummary_shouldMatchPerHabitStats() {
+        LocalDate today = LocalDate.now();
+        habit.setCompletedDates(List.of(today.minusDays(2), today.minusDays(1), today));
+        Habit idle = new Habit();
+        idle.setTitle("Idle");
+        idle.setCompletedDates(List.of(today.minusDays(3)));
+        entityManager.persist(idle);
+        entityManager.flush();
+        entityManager.clear();
+
+        HabitStatsSummaryDTO summary = habitStatsQueryService.getStatsSummary();
+
+        HabitSummaryDTO active = summary.getHabits().stream()
+                .filter(row -> row.getHabitId().equals(habit.getId())).findFirst().orElseThrow();
+        HabitStatsDTO stats = habitService.getStats(habit.getId());
+        assertEquals(stats.getTotalDone(), active.getTotalDone());
+        assertEquals(stats.getCurrentStreak(), active.getCurrentStreak());
+        assertEquals(stats.getLongestStreak(), active.getLongestStreak());
+        assertEquals(stats.getSuccessRate(), active.getSuccessRate(), 1e-9);
+        assertTrue(active.isDoneToday());
+        assertEquals(1, summary.getDoneToday());
+    }
+
+    @Test
+    void getStatsBatch_shouldMatchSingleStatsInRequestOrder() {
+        LocalDate today = LocalDate.now();
+        habit.setCompletedDates(List.of(today.minusDays(1), today));
+        Habit other = new Habit();
+        other.setTitle("Other");
+        other.setCompletedDates(List.of(today.minusDays(10)));
+        other = entityManager.persist(other);
+        entityManager.flush();
+        entityManager.clear();
+
+        Map<Long, HabitStatsDTO> batch = habitStatsQueryService.getStats(List.of(other.getId(), 999L, habit.getId()));
+
+        assertEquals(List.of(other.getId(), habit.getId()), List.copyOf(batch.keySet()));
+        HabitStatsDTO single = habitService.getStats(habit.getId());
+        assertEquals(single.getTotalDone(), batch.get(habit.getId()).getTotalDone());
+        assertEquals(single.getCurrentStreak(), batch.get(habit.getId()).getCurrentStreak());
+        assertEquals(single.getSuccessRate(), batch.get(habit.getId()).getSuccessRate(), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> habitStatsQueryService.getStats(
+                LongStream.rangeClosed(1, 201).boxed().toList()));
+    }
+
+    @Test
+    void eTags_shouldChangeOnlyWhenHabitIsWritten() {
+        String page = habitService.getHabitsPageETag(null, null, null, null, false);
+        String stats = habitService.getStatsETag(habit.getId(), StreakEngine.Mode.DAILY);
+        assertEquals(page, habitService.getHabitsPageETag(null, null, null, null, false));
+        assertEquals(stats, habitService.getStatsETag(habit.getId(), StreakEngine.Mode.DAILY));
+
+        habitService.markHabitDone(habit.getId(), LocalDate.now());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertNotEquals(page, habitService.getHabitsPageETag(null, null, null, null, false));
+        assertNotEquals(stats, habitService.getStatsETag(habit.getId(), StreakEngine.Mode.DAILY));
+        assertNotEquals(page, habitService.getHabitsPageETag(null, 10, null, null, false));
+    }
+
+    @Test
+    void rollingRates_shouldFollowWritesAndMatchList() {
+        LocalDate today = LocalDate.now();
+        habit.setFrequency(7);
+        habit.setCreatedAt(today.minusDays(400).atStartOfDay());
+        habit.setCompletedDates(List.of(today.minusDays(100), today.minusDays(20), today.minusDays(1)));
+        entityManager.persistAndFlush(habit);
+
+        RollingRatesDTO before = habitService.getStats(habit.getId()).getRolling();
+        assertEquals(100.0 / 7, before.getLast7(), 1e-9);
+        assertEquals(200.0 / 30, before.getLast30(), 1e-9);
+
+        habitService.markHabitDone(habit.getId(), today);
+        habitService.toggleHabitDone(habit.getId(), today.minusDays(20));
+        entityManager.flush();
+        entityManager.clear();
+
+        HabitStats stored = habitStatsRepository.findById(habit.getId()).orElseThrow();
+        assertEquals(today, stored.getRollingAsOf());
+        assertArrayEquals(new int[]{2, 2, 2, 3}, stored.rollingCounts());
+        RollingRatesDTO listed = habitService.withRollingRates(habitService.getHabitsPage(null, null).getItems()).get(0).getRolling();
+        assertEquals(200.0 / 7, listed.getLast7(), 1e-9);
+        assertEquals(300.0 / 365, listed.getLast365(), 1e-9);
+    }
 }
@@ -1,27 +1,51 @@
 package habit.habittracker.layered.web;
 
 import habit.habittracker.controllers.HabitController;
+import habit.habittracker.controllers.HabitImportController;
+import habit.habittracker.dto.BulkImportResultDTO;
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.CheckInResultDTO;
+import habit.habittracker.dto.CompletionBatchDTO;
 import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitHeatmapDTO;
+import habit.habittracker.dto.HabitPageDTO;
+import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.dto.HabitStatsSummaryDTO;
+import habit.habittracker.dto.RollingRatesDTO;
+import habit.habittracker.dto.HabitSummaryDTO;
 import habit.habittracker.models.Habit;
+import habit.habittracker.models.StreakEngine;
+import habit.habittracker.services.HabitImportService;
 import habit.habittracker.services.HabitService;
+import habit.habittracker.services.HabitStatsQueryService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.time.LocalDate;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@WebMvcTest(HabitController.class)
+@WebMvcTest({HabitController.class, HabitImportController.class})
 class HabitControllerLayerTest {
 
     @Autowired
@@ -33,18 +57,185 @@ class HabitControllerLayerTest {
     @MockitoBean
     private HabitService habitService;
 
+    @MockitoBean
+    private HabitImportService habitImportService;
+
+    @MockitoBean
+    private HabitStatsQueryService habitStatsQueryService;
+
     @Test
     void getAllHabits_shouldReturnHabitsList() throws Exception {
         // given
         HabitDTO habit = HabitDTO.fromEntity(new Habit(1L, "Exercise", "Daily exercise", 1, null, List.of()));
-        when(habitService.getAllHabits()).thenReturn(List.of(habit));
+        when(habitService.getHabitsPage(null, null, null, null)).thenReturn(new HabitPageDTO(List.of(habit), null));
 
         // when & then
         mockMvc.perform(get("/habits"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$[0].id").value(1))
                 .andExpect(jsonPath("$[0].title").value("Exercise"))
-                .andExpect(jsonPath("$[0].frequency").value(1));
+                .andExpect(jsonPath("$[0].frequency").value(1))
+                .andExpect(header().doesNotExist(HabitController.NEXT_CURSOR_HEADER));
+    }
+
+    @Test
+    void getAllHabits_shouldPassCursorAndExposeNextCursor() throws Exception {
+        // given
+        String cursor = HabitPageDTO.encodeCursor(10L);
+        String next = HabitPageDTO.encodeCursor(12L);
+        HabitDTO habit = HabitDTO.fromEntity(new Habit(12L, "Exercise", "Daily exercise", 1, null, List.of()));
+        when(habitService.getHabitsPage(cursor, 2, null, null)).thenReturn(new HabitPageDTO(List.of(habit), next));
+
+        // when & then
+        mockMvc.perform(get("/habits").param("after", cursor).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(12))
+                .andExpect(header().string(HabitController.NEXT_CURSOR_HEADER, next));
+    }
+
+    @Test
+    void getAllHabits_shouldPassCompletionWindow() throws Exception {
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        when(habitService.getHabitsPage(null, null, from, to)).thenReturn(new HabitPageDTO(List.of(), null));
+
+        mockMvc.perform(get("/habits").param("completedFrom", "2025-03-01").param("completedTo", "2025-03-31"))
+                .andExpect(status().isOk());
+
+        verify(habitService).getHabitsPage(null, null, from, to);
+    }
+
+    @Test
+    void getCompletions_shouldReturnDatesInWindow() throws Exception {
+        LocalDate from = LocalDate.of(2025, 3, 1);
+        LocalDate to = LocalDate.of(2025, 3, 31);
+        when(habitService.getCompletions(1L, from, to)).thenReturn(List.of(LocalDate.of(2025, 3, 10)));
+
+        mockMvc.perform(get("/habits/{id}/completions", 1L).param("from", "2025-03-01").param("to", "2025-03-31"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0]").value("2025-03-10"));
+    }
+
+    @Test
+    void getAllHabits_shouldAnswer304ByVersionsOnly() throws Exception {
+        when(habitService.getHabitsPageETag(null, null, null, null, false)).thenReturn("\"abc\"");
+
+        mockMvc.perform(get("/habits").header(HttpHeaders.IF_NONE_MATCH, "\"abc\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"abc\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+        verify(habitService, never()).getHabitsPage(any(), any(), any(), any());
+    }
+
+    @Test
+    void stats_shouldReturnETagAndRecomputeOnMismatch() throws Exception {
+        when(habitService.getStatsETag(1L, StreakEngine.Mode.DAILY)).thenReturn("\"1-3-20000\"");
+        when(habitService.getStats(1L)).thenReturn(new HabitStatsDTO(1L, 2, 50.0, 1, 2));
+
+        mockMvc.perform(get("/habits/{id}/stats", 1L).header(HttpHeaders.IF_NONE_MATCH, "\"1-2-20000\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1-3-20000\""))
+                .andExpect(jsonPath("$.totalDone").value(2));
+    }
+
+    @Test
+    void stats_shouldUseWeeklyEngineOnRequest() throws Exception {
+        when(habitService.getWeeklyStats(1L)).thenReturn(new HabitStatsDTO(1L, 6, 100.0, 2, 2));
+
+        mockMvc.perform(get("/habits/{id}/stats", 1L).param("streaks", "weekly"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currentStreak").value(2));
+
+        verify(habitService, never()).getStats(1L);
+        mockMvc.perform(get("/habits/{id}/stats", 1L).param("streaks", "monthly"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getAllHabits_shouldEmbedRollingRatesOnRequest() throws Exception {
+        HabitDTO habit = HabitDTO.fromEntity(new Habit(1L, "Exercise", "Daily exercise", 7, null, List.of()));
+        List<HabitDTO> items = List.of(habit);
+        when(habitService.getHabitsPage(null, null, null, null)).thenReturn(new HabitPageDTO(items, null));
+        when(habitService.withRollingRates(items)).thenAnswer(inv -> {
+            habit.setRolling(new RollingRatesDTO(100.0, 50.0, 25.0, 10.0));
+            return items;
+        });
+
+        mockMvc.perform(get("/habits").param("rolling", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].rolling.last7").value(100.0))
+                .andExpect(jsonPath("$[0].rolling.last365").value(10.0));
+    }
+
+    @Test
+    void heatmap_shouldReturnEncodedYear() throws Exception {
+        int[] monthly = new int[12];
+        monthly[2] = 1;
+        when(habitService.getHeatmap(1L, 2025)).thenReturn(new HabitHeatmapDTO(1L, 2025, 365, "AAAA", 1, monthly));
+
+        mockMvc.perform(get("/habits/{id}/heatmap", 1L).param("year", "2025"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.days").value("AAAA"))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.monthly[2]").value(1));
+    }
+
+    @Test
+    void statsSummary_shouldReturnRowPerHabit() throws Exception {
+        when(habitStatsQueryService.getStatsSummary()).thenReturn(new HabitStatsSummaryDTO(50.0, 1, List.of(
+                new HabitSummaryDTO(1L, 3, 50.0, 2, 3, true))));
+
+        mockMvc.perform(get("/habits/stats/summary"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.doneToday").value(1))
+                .andExpect(jsonPath("$.habits[0].habitId").value(1))
+                .andExpect(jsonPath("$.habits[0].doneToday").value(true));
+    }
+
+    @Test
+    void statsBatch_shouldKeepRequestOrder() throws Exception {
+        Map<Long, HabitStatsDTO> stats = new LinkedHashMap<>();
+        stats.put(3L, new HabitStatsDTO(3L, 1, 10.0, 1, 1));
+        stats.put(1L, new HabitStatsDTO(1L, 2, 20.0, 0, 2));
+        when(habitStatsQueryService.getStats(List.of(3L, 1L))).thenReturn(stats);
+
+        MvcResult result = mockMvc.perform(get("/habits/stats").param("ids", "3,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$['3'].totalDone").value(1))
+                .andReturn();
+
+        String body = result.getResponse().getContentAsString();
+        assertTrue(body.indexOf("\"3\"") < body.indexOf("\"1\""));
+    }
+
+    @Test
+    void exportHabits_shouldStreamNdjson() throws Exception {
+        // given
+        HabitDTO first = HabitDTO.fromEntity(new Habit(1L, "Exercise", "Daily exercise", 1, null, List.of()));
+        HabitDTO second = HabitDTO.fromEntity(new Habit(2L, "Reading", "Read books", 1, null, List.of(LocalDate.of(2024, 1, 2))));
+        doAnswer(inv -> {
+            Consumer<HabitDTO> sink = inv.getArgument(0);
+            sink.accept(first);
+            sink.accept(second);
+            return null;
+        }).when(habitService).exportHabits(any());
+
+        // when
+        MvcResult result = mockMvc.perform(get("/habits/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(first, objectMapper.readValue(lines[0], HabitDTO.class));
+        assertEquals(second, objectMapper.readValue(lines[1], HabitDTO.class));
     }
 
     @Test
@@ -109,6 +300,64 @@ class HabitControllerLayerTest {
                 .andExpect(jsonPath("$.completedDates.length()").value(1));
     }
 
+    @Test
+    void batchCompletions_shouldApplyAddsAndRemovesInOneCall() throws Exception {
+        // given
+        Long habitId = 1L;
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        CompletionBatchDTO batch = new CompletionBatchDTO(Set.of(day, day.plusDays(1)), Set.of(day.minusDays(1)));
+        Habit habit = new Habit(habitId, "Exercise", "Daily exercise", 1, null, List.of(day, day.plusDays(1)));
+        when(habitService.applyCompletions(eq(habitId), any(CompletionBatchDTO.class))).thenReturn(HabitDTO.fromEntity(habit));
+
+        // when & then
+        mockMvc.perform(post("/habits/{id}/completions:batch", habitId)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.completedDates.length()").value(2));
+
+        verify(habitService).applyCompletions(eq(habitId), argThat(b ->
+                b.getAdd().equals(batch.getAdd()) && b.getRemove().equals(batch.getRemove())));
+    }
+
+    @Test
+    void checkIn_shouldReturnResultPerEntry() throws Exception {
+        // given
+        LocalDate today = LocalDate.of(2024, 3, 1);
+        List<CheckInDTO> entries = List.of(new CheckInDTO(1L, today, true), new CheckInDTO(2L, today, true));
+        when(habitService.checkIn(anyList())).thenReturn(List.of(
+                CheckInResultDTO.ok(1L, today, true),
+                CheckInResultDTO.failed(2L, today, true, "Not found")));
+
+        // when & then
+        mockMvc.perform(post("/habits/check-in")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(entries)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].success").value(true))
+                .andExpect(jsonPath("$[1].success").value(false))
+                .andExpect(jsonPath("$[1].error").value("Not found"));
+    }
+
+    @Test
+    void importHabits_shouldAcceptListOnBulkPath() throws Exception {
+        // given
+        List<HabitDTO> habits = List.of(
+                HabitDTO.fromEntity(new Habit(null, "Exercise", "Daily exercise", 1, null, List.of())),
+                HabitDTO.fromEntity(new Habit(null, "Reading", "Read books", 1, null, List.of(LocalDate.of(2024, 1, 1)))));
+        when(habitImportService.importHabits(anyList())).thenReturn(new BulkImportResultDTO(2, List.of(1L, 2L), 5, 400.0));
+
+        // when & then
+        mockMvc.perform(post("/habits:bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(habits)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.ids.length()").value(2));
+
+        verify(habitImportService).importHabits(argThat(list -> list.size() == 2));
+    }
+
     @Test
     void createHabit_shouldReturn400_whenInvalidData() throws Exception {
         // when & then - тестируем валидацию (можно добавить @Valid в контроллере)
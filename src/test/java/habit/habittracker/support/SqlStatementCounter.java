@@ -0,0 +1,25 @@
+package habit.habittracker.support;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Подключается через spring.jpa.properties.hibernate.session_factory.statement_inspector
+// и считает все SQL, которые готовит Hibernate
+public class SqlStatementCounter implements StatementInspector {
+    private static final AtomicInteger COUNT = new AtomicInteger();
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.incrementAndGet();
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.set(0);
+    }
+
+    public static int count() {
+        return COUNT.get();
+    }
+}
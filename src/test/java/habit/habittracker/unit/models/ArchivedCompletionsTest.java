@@ -0,0 +1,55 @@
+package habit.habittracker.unit.models;
+
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.models.CompletionSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArchivedCompletionsTest {
+
+    @Test
+    void of_shouldRoundTripYearsAndDropEmptyOnes() {
+        SortedMap<Integer, byte[]> years = new TreeMap<>();
+        for (LocalDate date : List.of(LocalDate.of(2015, 1, 1), LocalDate.of(2016, 12, 31), LocalDate.of(2016, 2, 29))) {
+            years.put(date.getYear(), CompletionSet.withDay(years.get(date.getYear()), date, true));
+        }
+        years.put(2017, new byte[CompletionSet.BYTES_PER_YEAR]);
+
+        ArchivedCompletions archive = ArchivedCompletions.of(7L, years);
+
+        assertEquals(2015, archive.getFirstYear());
+        assertEquals(2016, archive.getLastYear());
+        assertEquals(List.of(LocalDate.of(2015, 1, 1), LocalDate.of(2016, 2, 29), LocalDate.of(2016, 12, 31)),
+                new CompletionSet(archive.years()).toDates());
+        assertNull(ArchivedCompletions.of(7L, new TreeMap<>(Map.of(2017, new byte[CompletionSet.BYTES_PER_YEAR]))));
+    }
+
+    @Test
+    void layer_shouldPutArchiveUnderHotYears() {
+        ArchivedCompletions archive = ArchivedCompletions.of(1L,
+                new TreeMap<>(Map.of(2015, CompletionSet.withDay(null, LocalDate.of(2015, 3, 1), true))));
+        Map<Long, CompletionSet> completions = new HashMap<>();
+        completions.put(1L, CompletionSet.of(List.of(LocalDate.of(2025, 3, 1))));
+
+        ArchivedCompletions.layer(completions, List.of(archive, ArchivedCompletions.of(2L, archive.years())));
+
+        assertEquals(List.of(LocalDate.of(2015, 3, 1), LocalDate.of(2025, 3, 1)), completions.get(1L).toDates());
+        assertEquals(List.of(LocalDate.of(2015, 3, 1)), completions.get(2L).toDates());
+    }
+
+    @Test
+    void mayHold_shouldKeepRecentYearsHot() {
+        LocalDate today = LocalDate.of(2026, 10, 18);
+
+        assertTrue(ArchivedCompletions.mayHold(2024, today));
+        assertFalse(ArchivedCompletions.mayHold(2025, today));
+    }
+}
@@ -0,0 +1,140 @@
+package habit.habittracker.unit.models;
+
+import habit.habittracker.models.CompletionSet;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionSetTest {
+
+    @Test
+    void add_shouldBeIdempotent() {
+        CompletionSet set = new CompletionSet();
+
+        assertTrue(set.add(LocalDate.of(2024, 3, 1)));
+        assertFalse(set.add(LocalDate.of(2024, 3, 1)));
+
+        assertEquals(1, set.size());
+        assertTrue(set.contains(LocalDate.of(2024, 3, 1)));
+        assertFalse(set.contains(LocalDate.of(2024, 3, 2)));
+    }
+
+    @Test
+    void toDates_shouldReturnSortedDatesAcrossYears() {
+        CompletionSet set = CompletionSet.of(List.of(
+                LocalDate.of(2024, 12, 31),
+                LocalDate.of(2023, 1, 1),
+                LocalDate.of(2024, 2, 29)));
+
+        assertEquals(List.of(
+                LocalDate.of(2023, 1, 1),
+                LocalDate.of(2024, 2, 29),
+                LocalDate.of(2024, 12, 31)), set.toDates());
+    }
+
+    @Test
+    void toDatesInWindow_shouldIncludeBoundsAndSkipOtherYears() {
+        CompletionSet set = CompletionSet.of(List.of(
+                LocalDate.of(2022, 6, 1),
+                LocalDate.of(2023, 12, 30),
+                LocalDate.of(2023, 12, 31),
+                LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 1, 2)));
+
+        assertEquals(List.of(LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 1)),
+                set.toDates(LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 1)));
+        assertTrue(set.toDates(LocalDate.of(2024, 1, 2), LocalDate.of(2024, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void shouldKeepOneCompactBlockPerYear() {
+        SortedMap<Integer, byte[]> years = new TreeMap<>();
+        CompletionSet set = new CompletionSet(years);
+        LocalDate day = LocalDate.of(2023, 1, 1);
+        for (int i = 0; i < 3 * 365; i++) set.add(day.plusDays(i));
+
+        assertEquals(3 * 365, set.size());
+        assertEquals(List.of(2023, 2024, 2025), List.copyOf(years.keySet()));
+        years.values().forEach(bits -> assertEquals(CompletionSet.BYTES_PER_YEAR, bits.length));
+    }
+
+    @Test
+    void remove_shouldDropEmptyYear() {
+        SortedMap<Integer, byte[]> years = new TreeMap<>();
+        CompletionSet set = new CompletionSet(years);
+        set.add(LocalDate.of(2023, 6, 1));
+        set.add(LocalDate.of(2024, 6, 1));
+
+        assertTrue(set.remove(LocalDate.of(2023, 6, 1)));
+        assertFalse(set.remove(LocalDate.of(2023, 6, 1)));
+
+        assertFalse(years.containsKey(2023));
+        assertEquals(List.of(LocalDate.of(2024, 6, 1)), set.toDates());
+    }
+
+    @Test
+    void emptySet_shouldHaveNoDates() {
+        CompletionSet set = CompletionSet.of(null);
+        assertTrue(set.isEmpty());
+        assertEquals(0, set.size());
+        assertTrue(set.toDates().isEmpty());
+    }
+
+    @Test
+    void countDays_shouldCountOnlyRange() {
+        byte[] bits = CompletionSet.withDay(null, LocalDate.of(2025, 1, 8), true);
+        bits = CompletionSet.withDay(bits, LocalDate.of(2025, 1, 9), true);
+
+        assertEquals(2, CompletionSet.countDays(bits, 0, 365));
+        assertEquals(1, CompletionSet.countDays(bits, 0, 8));
+        assertEquals(0, CompletionSet.countDays(null, 0, 365));
+    }
+
+    @Test
+    void toEpochDays_shouldMatchDatesAcrossYears() {
+        List<LocalDate> dates = List.of(LocalDate.of(2023, 12, 31), LocalDate.of(2024, 1, 1),
+                LocalDate.of(2024, 2, 29), LocalDate.of(2024, 12, 31));
+
+        int[] days = CompletionSet.of(dates).toEpochDays();
+
+        assertArrayEquals(dates.stream().mapToInt(d -> (int) d.toEpochDay()).toArray(), days);
+    }
+
+    @Test
+    void count_shouldIncludeBoundsAcrossYears() {
+        CompletionSet set = CompletionSet.of(List.of(LocalDate.of(2024, 12, 25), LocalDate.of(2024, 12, 31),
+                LocalDate.of(2025, 1, 1), LocalDate.of(2025, 1, 7), LocalDate.of(2025, 1, 8)));
+
+        assertEquals(3, set.count(LocalDate.of(2024, 12, 31), LocalDate.of(2025, 1, 7)));
+        assertEquals(0, set.count(LocalDate.of(2025, 1, 8), LocalDate.of(2025, 1, 7)));
+    }
+
+    @Test
+    void archivedLayer_shouldReadThroughAndWriteOnlyHotBlocks() {
+        SortedMap<Integer, byte[]> archived = new TreeMap<>();
+        new CompletionSet(archived).add(LocalDate.of(2019, 5, 1));
+        new CompletionSet(archived).add(LocalDate.of(2019, 5, 2));
+        SortedMap<Integer, byte[]> hot = new TreeMap<>();
+        CompletionSet set = new CompletionSet(hot).withArchived(archived);
+        set.add(LocalDate.of(2025, 1, 1));
+
+        assertEquals(List.of(LocalDate.of(2019, 5, 1), LocalDate.of(2019, 5, 2), LocalDate.of(2025, 1, 1)), set.toDates());
+        assertEquals(3, set.toEpochDays().length);
+
+        // правка архивного года ложится горячим блоком, архив не трогается
+        assertTrue(set.remove(LocalDate.of(2019, 5, 1)));
+        assertTrue(hot.containsKey(2019));
+        assertEquals(2, CompletionSet.countDays(archived.get(2019), 0, CompletionSet.DAYS_PER_YEAR));
+
+        // опустевший год остаётся нулевым блоком, иначе снова проступил бы архив
+        assertTrue(set.remove(LocalDate.of(2019, 5, 2)));
+        assertEquals(0, CompletionSet.countDays(hot.get(2019), 0, CompletionSet.DAYS_PER_YEAR));
+        assertEquals(List.of(LocalDate.of(2025, 1, 1)), set.toDates());
+        assertFalse(set.contains(LocalDate.of(2019, 5, 2)));
+    }
+}
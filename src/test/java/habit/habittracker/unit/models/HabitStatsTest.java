@@ -0,0 +1,138 @@
+package habit.habittracker.unit.models;
+
+import habit.habittracker.models.CompletionSet;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.models.StreakEngine;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HabitStatsTest {
+
+    private static final LocalDate START = LocalDate.of(2024, 1, 1);
+
+    @Test
+    void rebuildFrom_shouldFindLongestAndLastStreak() {
+        CompletionSet completions = CompletionSet.of(List.of(
+                START, START.plusDays(1), START.plusDays(2),
+                START.plusDays(5), START.plusDays(6)));
+
+        HabitStats stats = HabitStats.of(1L, completions);
+
+        assertEquals(5, stats.getTotalDone());
+        assertEquals(3, stats.getLongestStreak());
+        assertEquals(START.plusDays(5), stats.getCurrentStreakStart());
+        assertEquals(START.plusDays(6), stats.getLastCompletion());
+    }
+
+    @Test
+    void recordAdded_shouldMergeStreaksOnBackfill() {
+        CompletionSet completions = CompletionSet.of(List.of(START, START.plusDays(2), START.plusDays(3)));
+        HabitStats stats = HabitStats.of(1L, completions);
+
+        completions.add(START.plusDays(1));
+        stats.recordAdded(START.plusDays(1), completions);
+
+        assertEquals(4, stats.getLongestStreak());
+        assertEquals(START, stats.getCurrentStreakStart());
+        assertEquals(4, stats.currentStreak(START.plusDays(3), completions));
+    }
+
+    @Test
+    void currentStreak_todayNotYetDone_shouldKeepStreakThroughYesterday() {
+        CompletionSet completions = CompletionSet.of(List.of(START, START.plusDays(1)));
+        HabitStats stats = HabitStats.of(1L, completions);
+
+        assertEquals(2, stats.currentStreak(START.plusDays(1), completions));
+        assertEquals(2, stats.currentStreak(START.plusDays(2), completions));
+        assertEquals(0, stats.currentStreak(START.plusDays(3), completions));
+
+        // есть отметки "в будущем": серия до вчера считается по отметкам
+        completions.add(START.plusDays(5));
+        stats = HabitStats.of(1L, completions);
+        assertEquals(2, stats.currentStreak(START.plusDays(2), completions));
+    }
+
+    @Test
+    void currentStreak_shouldMatchDailyEngine() {
+        Random random = new Random(7);
+        CompletionSet completions = new CompletionSet();
+        for (int i = 0; i < 200; i++) {
+            if (random.nextInt(3) > 0) completions.add(START.plusDays(i));
+        }
+        HabitStats stats = HabitStats.of(1L, completions);
+        int[] days = completions.toEpochDays();
+
+        for (int i = 0; i < 210; i++) {
+            LocalDate today = START.plusDays(i);
+            int engine = StreakEngine.evaluate(days, StreakEngine.Mode.DAILY, 7, START.toEpochDay(), today.toEpochDay())
+                    .currentStreak();
+            assertEquals(engine, stats.currentStreak(today, completions), "today = " + today);
+        }
+    }
+
+    @Test
+    void tryRecord_shouldRefuseWhenCompletionsAreNeeded() {
+        CompletionSet completions = CompletionSet.of(List.of(START, START.plusDays(1), START.plusDays(2)));
+        HabitStats stats = HabitStats.of(1L, completions);
+
+        assertFalse(stats.tryRecordAdded(START.minusDays(5)));
+        assertFalse(stats.tryRecordRemoved(START.plusDays(2)));
+        assertEquals(3, stats.getTotalDone());
+
+        assertTrue(stats.tryRecordAdded(START.plusDays(3)));
+        assertEquals(4, stats.getLongestStreak());
+        assertEquals(START.plusDays(3), stats.getLastCompletion());
+    }
+
+    @Test
+    void incrementalUpdates_shouldMatchFullRebuild() {
+        Random random = new Random(42);
+        CompletionSet completions = new CompletionSet();
+        HabitStats stats = HabitStats.of(1L, completions);
+
+        for (int step = 0; step < 5_000; step++) {
+            LocalDate date = START.plusDays(random.nextInt(60));
+            if (completions.remove(date)) {
+                stats.recordRemoved(date, completions);
+            } else {
+                completions.add(date);
+                stats.recordAdded(date, completions);
+            }
+
+            HabitStats expected = HabitStats.of(1L, completions);
+            assertEquals(expected.getTotalDone(), stats.getTotalDone());
+            assertEquals(expected.getLongestStreak(), stats.getLongestStreak());
+            assertEquals(expected.getCurrentStreakStart(), stats.getCurrentStreakStart());
+            assertEquals(expected.getLastCompletion(), stats.getLastCompletion());
+        }
+    }
+
+    @Test
+    void rolling_shouldShiftOnWritesAndAdvanceOnNewDay() {
+        LocalDate today = START.plusDays(400);
+        CompletionSet completions = CompletionSet.of(List.of(today.minusDays(365), today.minusDays(40), today.minusDays(3)));
+        HabitStats stats = HabitStats.of(1L, completions);
+        assertTrue(stats.rollingNeedsAdvance(today));
+
+        stats.advanceRolling(today, completions);
+        assertArrayEquals(new int[]{1, 1, 2, 2}, stats.rollingCounts());
+
+        completions.add(today);
+        stats.recordAdded(today, completions);
+        completions.remove(today.minusDays(40));
+        stats.recordRemoved(today.minusDays(40), completions);
+        assertArrayEquals(new int[]{2, 2, 2, 2}, stats.rollingCounts());
+        assertFalse(stats.rollingNeedsAdvance(today));
+
+        // через 5 дней отметка трёхдневной давности выходит из недельного окна
+        LocalDate later = today.plusDays(5);
+        assertTrue(stats.rollingNeedsAdvance(later));
+        stats.advanceRolling(later, completions);
+        assertArrayEquals(new int[]{1, 2, 2, 2}, stats.rollingCounts());
+    }
+}
@@ -0,0 +1,117 @@
+package habit.habittracker.unit.models;
+
+import habit.habittracker.models.StreakEngine;
+import habit.habittracker.models.StreakEngine.Mode;
+import habit.habittracker.models.StreakEngine.Result;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreakEngineTest {
+
+    // понедельник
+    private static final LocalDate MONDAY = LocalDate.of(2025, 3, 3);
+
+    @Test
+    void daily_shouldFindLongestAndCurrentStreak() {
+        LocalDate today = MONDAY.plusDays(9);
+        Result result = evaluate(Mode.DAILY, 7, MONDAY, today,
+                MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2), MONDAY.plusDays(5), MONDAY.plusDays(8), MONDAY.plusDays(9));
+
+        assertEquals(6, result.totalDone());
+        assertEquals(3, result.longestStreak());
+        assertEquals(2, result.currentStreak());
+    }
+
+    @Test
+    void daily_todayNotYetDone_shouldKeepStreakThroughYesterday() {
+        LocalDate today = MONDAY.plusDays(3);
+        Result result = evaluate(Mode.DAILY, 7, MONDAY, today, MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2));
+
+        assertEquals(3, result.currentStreak());
+        assertEquals(0, evaluate(Mode.DAILY, 7, MONDAY, today.plusDays(1),
+                MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(2)).currentStreak());
+    }
+
+    @Test
+    void weekly_shouldCountWeeksThatReachFrequency() {
+        LocalDate today = MONDAY.plusWeeks(3).plusDays(1);
+        Result result = evaluate(Mode.WEEKLY, 2, MONDAY, today,
+                // неделя 1: 2 отметки, неделя 2: 1 отметка, неделя 3: 3 отметки, неделя 4 (текущая): 1
+                MONDAY, MONDAY.plusDays(6),
+                MONDAY.plusWeeks(1).plusDays(3),
+                MONDAY.plusWeeks(2), MONDAY.plusWeeks(2).plusDays(2), MONDAY.plusWeeks(2).plusDays(4),
+                MONDAY.plusWeeks(3));
+
+        assertEquals(7, result.totalDone());
+        assertEquals(1, result.longestStreak());
+        // текущая неделя ещё не добрала цель, серия из прошлой недели не обрывается
+        assertEquals(1, result.currentStreak());
+    }
+
+    @Test
+    void weekly_shouldJoinConsecutiveWeeksAndBreakOnMissedWeek() {
+        LocalDate today = MONDAY.plusWeeks(4);
+        int[] days = IntStream.range(0, 3)
+                .flatMap(week -> IntStream.of(0, 3, 5).map(d -> (int) MONDAY.plusWeeks(week).plusDays(d).toEpochDay()))
+                .toArray();
+
+        Result active = StreakEngine.evaluate(days, Mode.WEEKLY, 3, MONDAY.toEpochDay(), MONDAY.plusWeeks(3).toEpochDay());
+        Result broken = StreakEngine.evaluate(days, Mode.WEEKLY, 3, MONDAY.toEpochDay(), today.toEpochDay());
+
+        assertEquals(3, active.longestStreak());
+        assertEquals(3, active.currentStreak());
+        assertEquals(3, broken.longestStreak());
+        assertEquals(0, broken.currentStreak());
+    }
+
+    @Test
+    void shouldIgnoreFutureDaysAndDuplicates() {
+        LocalDate today = MONDAY.plusDays(1);
+        Result result = evaluate(Mode.DAILY, 7, MONDAY, today, MONDAY, MONDAY, MONDAY.plusDays(1), MONDAY.plusDays(5));
+
+        assertEquals(2, result.totalDone());
+        assertEquals(2, result.currentStreak());
+    }
+
+    @Test
+    void emptyHistory_shouldBeZero() {
+        Result result = StreakEngine.evaluate(new int[0], Mode.WEEKLY, 3, MONDAY.toEpochDay(), MONDAY.toEpochDay());
+
+        assertEquals(0, result.totalDone());
+        assertEquals(0, result.longestStreak());
+        assertEquals(0, result.currentStreak());
+        assertEquals(0.0, result.successRate());
+    }
+
+    @Test
+    void successRate_shouldMatchFrequencyTarget() {
+        LocalDate today = MONDAY.plusDays(13);
+        int[] days = IntStream.range(0, 14).filter(d -> d % 2 == 0)
+                .map(d -> (int) MONDAY.plusDays(d).toEpochDay()).toArray();
+
+        // 7 отметок за две недели при цели 3 в неделю — больше идеала, поэтому 100%
+        assertEquals(100.0, StreakEngine.evaluate(days, Mode.WEEKLY, 3, MONDAY.toEpochDay(), today.toEpochDay()).successRate());
+        // при ежедневной цели — половина
+        assertEquals(50.0, StreakEngine.evaluate(days, Mode.DAILY, 7, MONDAY.toEpochDay(), today.toEpochDay()).successRate(), 1e-9);
+    }
+
+    @Test
+    void longHistory_shouldBeEvaluatedInOnePass() {
+        int[] days = IntStream.range(0, 20_000).map(d -> (int) MONDAY.toEpochDay() - 20_000 + 1 + d).toArray();
+
+        Result result = StreakEngine.evaluate(days, Mode.DAILY, 7, days[0], MONDAY.toEpochDay());
+
+        assertEquals(20_000, result.longestStreak());
+        assertEquals(20_000, result.currentStreak());
+    }
+
+    private static Result evaluate(Mode mode, int frequency, LocalDate created, LocalDate today, LocalDate... dates) {
+        int[] days = new int[dates.length];
+        for (int i = 0; i < dates.length; i++) days[i] = (int) dates[i].toEpochDay();
+        return StreakEngine.evaluate(days, mode, frequency, created.toEpochDay(), today.toEpochDay());
+    }
+}
@@ -6,7 +6,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.Limit;
 
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Optional;
 
@@ -73,6 +75,49 @@ class HabitRepositoryTest {
         assertEquals(2, habits.size());
     }
 
+    @Test
+    void findByIdGreaterThan_shouldSeekByPrimaryKey() {
+        // given
+        Habit first = new Habit();
+        first.setTitle("Habit 1");
+        Habit second = new Habit();
+        second.setTitle("Habit 2");
+        Habit third = new Habit();
+        third.setTitle("Habit 3");
+        entityManager.persist(first);
+        entityManager.persist(second);
+        entityManager.persist(third);
+        entityManager.flush();
+
+        // when
+        List<Habit> page = habitRepository.findByIdGreaterThanOrderByIdAsc(first.getId(), Limit.of(1));
+
+        // then
+        assertEquals(1, page.size());
+        assertEquals(second.getId(), page.get(0).getId());
+    }
+
+    @Test
+    void findCompletionYears_shouldReturnOnlyRowsInYearRange() {
+        // given
+        Habit habit = new Habit();
+        habit.setTitle("Long history");
+        habit.setCompletedDates(List.of(LocalDate.of(2019, 5, 1), LocalDate.of(2024, 5, 1), LocalDate.of(2025, 5, 1)));
+        Habit other = new Habit();
+        other.setTitle("Other");
+        other.setCompletedDates(List.of(LocalDate.of(2024, 5, 1)));
+        entityManager.persist(habit);
+        entityManager.persist(other);
+        entityManager.flush();
+
+        // when
+        List<Object[]> rows = habitRepository.findCompletionYears(List.of(habit.getId()), 2024, 2025);
+
+        // then
+        assertEquals(List.of(2024, 2025), rows.stream().map(row -> ((Number) row[1]).intValue()).sorted().toList());
+        assertTrue(rows.stream().allMatch(row -> ((Number) row[0]).longValue() == habit.getId()));
+    }
+
     @Test
     void delete_shouldRemoveHabit() {
         // given
@@ -0,0 +1,100 @@
+package habit.habittracker.unit.services;
+
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.services.CompletionWriteBehind;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompletionWriteBehindTest {
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 10);
+
+    private final List<List<CheckInDTO>> written = new ArrayList<>();
+
+    private CompletionWriteBehind queue(int capacity, int batchSize) {
+        CompletionWriteBehind queue = new CompletionWriteBehind(true, capacity, batchSize,
+                Duration.ofHours(1), Duration.ofMillis(10));
+        queue.bind(batch -> written.add(List.copyOf(batch)));
+        return queue;
+    }
+
+    @Test
+    void enqueue_shouldCoalesceSameHabitAndDay() {
+        CompletionWriteBehind queue = queue(10, 10);
+
+        queue.enqueue(1L, DAY, true);
+        queue.enqueue(1L, DAY, false);
+        queue.enqueue(1L, DAY, true);
+
+        assertEquals(1, queue.size());
+        assertEquals(Map.of(1L, Map.of(DAY, true)), queue.snapshot());
+    }
+
+    @Test
+    void enqueue_shouldRejectWhenFull() {
+        CompletionWriteBehind queue = queue(1, 10);
+        queue.enqueue(1L, DAY, true);
+
+        // тот же день схлопывается и места не требует
+        queue.enqueue(1L, DAY, false);
+        assertThrows(RejectedExecutionException.class, () -> queue.enqueue(1L, DAY.plusDays(1), true));
+    }
+
+    @Test
+    void flushAll_shouldWriteInBatchesAndFreeCapacity() {
+        CompletionWriteBehind queue = queue(10, 2);
+        for (int i = 0; i < 5; i++) queue.enqueue((long) i, DAY, true);
+
+        queue.flushAll();
+
+        assertEquals(List.of(2, 2, 1), written.stream().map(List::size).toList());
+        assertEquals(0, queue.size());
+        assertTrue(queue.snapshot().isEmpty());
+    }
+
+    @Test
+    void flush_shouldKeepEntriesWhenWriteFails() {
+        CompletionWriteBehind queue = new CompletionWriteBehind(true, 10, 10, Duration.ofHours(1), Duration.ofMillis(10));
+        queue.bind(batch -> {
+            throw new IllegalStateException("database down");
+        });
+        queue.enqueue(1L, DAY, true);
+
+        assertThrows(IllegalStateException.class, () -> queue.flush(1L));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void flush_shouldWriteOnlyRequestedHabit() {
+        CompletionWriteBehind queue = queue(10, 10);
+        queue.enqueue(1L, DAY, true);
+        queue.enqueue(2L, DAY, true);
+
+        queue.flush(1L);
+
+        assertEquals(1, written.size());
+        CheckInDTO entry = written.get(0).get(0);
+        assertEquals(1L, entry.getHabitId());
+        assertEquals(DAY, entry.getDate());
+        assertTrue(entry.getDone());
+        assertEquals(Map.of(2L, Map.of(DAY, true)), queue.snapshot());
+    }
+
+    @Test
+    void overlay_shouldApplyQueuedStateOnTopOfStoredDates() {
+        HabitDTO habit = new HabitDTO(1L, "Run", null, 1, null, List.of(DAY.minusDays(1), DAY));
+
+        HabitDTO result = CompletionWriteBehind.overlay(habit,
+                Map.of(1L, Map.of(DAY, false, DAY.plusDays(1), true)));
+
+        assertEquals(List.of(DAY.minusDays(1), DAY.plusDays(1)), result.getCompletedDates());
+    }
+}
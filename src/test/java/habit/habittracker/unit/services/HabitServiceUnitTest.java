@@ -1,15 +1,35 @@
 package habit.habittracker.unit.services;
 
+import habit.habittracker.dto.CheckInDTO;
+import habit.habittracker.dto.CheckInResultDTO;
 import habit.habittracker.dto.HabitDTO;
+import habit.habittracker.dto.HabitHeatmapDTO;
+import habit.habittracker.dto.HabitPageDTO;
 import habit.habittracker.dto.HabitStatsDTO;
+import habit.habittracker.models.ArchivedCompletions;
+import habit.habittracker.models.CompletionSet;
 import habit.habittracker.models.Habit;
+import habit.habittracker.models.HabitStats;
+import habit.habittracker.repositories.ArchivedCompletionsRepository;
 import habit.habittracker.repositories.HabitRepository;
+import habit.habittracker.repositories.HabitStatsRepository;
+import habit.habittracker.services.CompletionWriteBehind;
+import habit.habittracker.services.HabitLocks;
+import habit.habittracker.services.HabitMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import habit.habittracker.services.HabitService;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -25,6 +45,27 @@ class HabitServiceUnitTest {
     @Mock
     private HabitRepository habitRepository;
 
+    @Mock
+    private HabitStatsRepository habitStatsRepository;
+
+    @Mock
+    private ArchivedCompletionsRepository archiveRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private CompletionWriteBehind writeBehind;
+
+    @Spy
+    private HabitLocks habitLocks = new HabitLocks(16);
+
+    @Spy
+    private HabitMetrics habitMetrics = new HabitMetrics(new SimpleMeterRegistry());
+
+    @Spy
+    private TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private HabitService habitService;
 
@@ -40,6 +81,58 @@ class HabitServiceUnitTest {
         verify(habitRepository).findAll();
     }
 
+    @Test
+    void getAllHabits_shouldMergeArchiveOnlyForFoldedHabits() {
+        LocalDate archivedDay = LocalDate.of(2015, 6, 1);
+        LocalDate hotDay = LocalDate.now();
+        Habit folded = new Habit(1L, "Exercise", "Daily exercise", 1, null, List.of(hotDay));
+        folded.setArchivedThrough(2015);
+        Habit hot = new Habit(2L, "Reading", "Read books", 1, null, List.of(hotDay));
+        when(habitRepository.findAll()).thenReturn(List.of(folded, hot));
+        when(archiveRepository.findAllById(List.of(1L))).thenReturn(List.of(ArchivedCompletions.of(1L,
+                new TreeMap<>(Map.of(2015, CompletionSet.withDay(null, archivedDay, true))))));
+
+        List<HabitDTO> result = habitService.getAllHabits();
+
+        assertEquals(List.of(archivedDay, hotDay), result.get(0).getCompletedDates());
+        assertEquals(List.of(hotDay), result.get(1).getCompletedDates());
+    }
+
+    @Test
+    void getHabitsPage_shouldSeekAfterCursorAndReturnNextCursor() {
+        Habit habit3 = new Habit(3L, "Exercise", "Daily exercise", 1, null, List.of());
+        Habit habit4 = new Habit(4L, "Reading", "Read books", 1, null, List.of());
+        Habit habit5 = new Habit(5L, "Sleep", "Sleep early", 1, null, List.of());
+        when(habitRepository.findByIdGreaterThanOrderByIdAsc(eq(2L), argThat((Limit l) -> l.max() == 3)))
+                .thenReturn(new ArrayList<>(List.of(habit3, habit4, habit5)));
+
+        HabitPageDTO page = habitService.getHabitsPage(HabitPageDTO.encodeCursor(2L), 2);
+
+        assertEquals(2, page.getItems().size());
+        assertEquals(4L, page.getItems().get(1).getId());
+        assertEquals(4L, HabitPageDTO.decodeCursor(page.getNextCursor()));
+        verify(habitRepository, never()).findAll();
+    }
+
+    @Test
+    void getHabitsPage_shouldReturnNoCursorOnLastPage() {
+        Habit habit1 = new Habit(1L, "Exercise", "Daily exercise", 1, null, List.of());
+        when(habitRepository.findByIdGreaterThanOrderByIdAsc(eq(0L),
+                argThat((Limit l) -> l.max() == HabitService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(new ArrayList<>(List.of(habit1)));
+
+        HabitPageDTO page = habitService.getHabitsPage(null, null);
+
+        assertEquals(1, page.getItems().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getHabitsPage_shouldRejectInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> habitService.getHabitsPage(null, 0));
+        assertThrows(IllegalArgumentException.class, () -> habitService.getHabitsPage("not-a-cursor", 10));
+    }
+
     @Test
     void addHabit_shouldSaveAndReturnHabit() {
         Habit habitToSave = new Habit(null, "Meditation", "Daily meditation", 1, null, List.of());
@@ -110,6 +203,32 @@ class HabitServiceUnitTest {
         assertThrows(RuntimeException.class, () -> habitService.markHabitDone(1L, LocalDate.now()));
     }
 
+    @Test
+    void markHabitDone_shouldRetryAfterVersionConflict() {
+        LocalDate date = LocalDate.now();
+        when(habitRepository.findById(1L))
+                .thenReturn(Optional.of(new Habit(1L, "Exercise", "Daily", 1, null, new ArrayList<>())));
+        when(habitRepository.save(any()))
+                .thenThrow(new ObjectOptimisticLockingFailureException(Habit.class, 1L))
+                .thenAnswer(inv -> inv.getArgument(0));
+
+        HabitDTO result = habitService.markHabitDone(1L, date);
+
+        assertEquals(List.of(date), result.getCompletedDates());
+        verify(habitRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void markHabitDone_shouldGiveUpAfterMaxAttempts() {
+        when(habitRepository.findById(1L))
+                .thenAnswer(inv -> Optional.of(new Habit(1L, "Exercise", "Daily", 1, null, new ArrayList<>())));
+        when(habitRepository.save(any())).thenThrow(new ObjectOptimisticLockingFailureException(Habit.class, 1L));
+
+        assertThrows(ObjectOptimisticLockingFailureException.class,
+                () -> habitService.markHabitDone(1L, LocalDate.now()));
+        verify(habitRepository, times(HabitService.MAX_WRITE_ATTEMPTS)).findById(1L);
+    }
+
     @Test
     void toggleHabitDone_shouldAddAndRemoveDate() {
         LocalDate today = LocalDate.now();
@@ -179,4 +298,151 @@ class HabitServiceUnitTest {
         assertEquals(7, stats.getCurrentStreak());
     }
 
+    @Test
+    void getStats_shouldUseStoredProjectionWithoutRecomputing() {
+        LocalDate today = LocalDate.now();
+        Habit habit = new Habit(1L, "Stats", "Test", 1, today.minusDays(9).atStartOfDay(), List.of());
+        HabitStats stored = new HabitStats(1L, 5, 4, today.minusDays(1), today);
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        when(habitStatsRepository.findById(1L)).thenReturn(Optional.of(stored));
+
+        HabitStatsDTO stats = habitService.getStats(1L);
+
+        assertEquals(5, stats.getTotalDone());
+        assertEquals(2, stats.getCurrentStreak());
+        assertEquals(4, stats.getLongestStreak());
+        verify(habitStatsRepository, never()).save(any());
+        // сдвиг окон меняет проекцию — только под блокировкой привычки, как запись
+        assertNotNull(stats.getRolling());
+        verify(habitLocks).withLocks(eq(List.of(1L)), any());
+    }
+
+    @Test
+    void getStats_shouldRetryWhenProjectionWasInsertedConcurrently() {
+        LocalDate today = LocalDate.now();
+        Habit habit = new Habit(1L, "Stats", "Test", 1, today.minusDays(9).atStartOfDay(), List.of(today));
+        HabitStats inserted = HabitStats.of(1L, habit.getCompletions());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        // первая попытка не нашла проекцию, а её вставил другой экземпляр
+        when(habitStatsRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(inserted));
+        when(habitStatsRepository.save(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        HabitStatsDTO stats = habitService.getStats(1L);
+
+        assertEquals(1, stats.getTotalDone());
+        verify(habitStatsRepository, times(2)).findById(1L);
+        verify(habitStatsRepository, times(1)).save(any());
+    }
+
+    @Test
+    void markHabitDone_shouldUpdateStoredProjectionIncrementally() {
+        LocalDate today = LocalDate.now();
+        Habit habit = new Habit(1L, "Exercise", "Daily", 1, null, List.of(today.minusDays(1)));
+        HabitStats stored = HabitStats.of(1L, habit.getCompletions());
+        when(habitRepository.findById(1L)).thenReturn(Optional.of(habit));
+        when(habitRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
+        when(habitStatsRepository.findById(1L)).thenReturn(Optional.of(stored));
+
+        habitService.markHabitDone(1L, today);
+
+        assertEquals(2, stored.getTotalDone());
+        assertEquals(2, stored.getLongestStreak());
+        assertEquals(today, stored.getLastCompletion());
+        verify(habitStatsRepository).save(stored);
+    }
+
+    @Test
+    void checkIn_shouldWriteYearRowsByKeyWithoutLoadingHabits() {
+        LocalDate today = LocalDate.now();
+        when(habitRepository.findExistingIds(Set.of(1L, 2L, 3L))).thenReturn(List.of(1L, 2L));
+        when(habitRepository.findCompletionYear(anyLong(), eq(today.getYear()))).thenReturn(List.of());
+
+        List<CheckInResultDTO> results = habitService.checkIn(List.of(
+                new CheckInDTO(1L, today, true),
+                new CheckInDTO(2L, null, null),
+                new CheckInDTO(3L, today, true)));
+
+        assertTrue(results.get(0).isSuccess());
+        assertTrue(results.get(1).isSuccess());
+        assertFalse(results.get(2).isSuccess());
+        verify(habitRepository).insertCompletionYear(eq(1L), eq(today.getYear()), any());
+        verify(habitRepository).insertCompletionYear(eq(2L), eq(today.getYear()), any());
+        verify(habitRepository, never()).findAllById(any());
+        verify(habitRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void checkIn_shouldSkipWriteWhenDayAlreadyMarked() {
+        LocalDate today = LocalDate.now();
+        byte[] marked = CompletionSet.withDay(null, today, true);
+        HabitStats stored = new HabitStats(1L, 1, 1, today, today);
+        when(habitRepository.findExistingIds(Set.of(1L))).thenReturn(List.of(1L));
+        when(habitStatsRepository.findAllById(Set.of(1L))).thenReturn(List.of(stored));
+        when(habitRepository.findCompletionYear(1L, today.getYear())).thenReturn(List.<byte[]>of(marked));
+
+        assertTrue(habitService.checkIn(List.of(new CheckInDTO(1L, today, true))).get(0).isSuccess());
+
+        assertEquals(1, stored.getTotalDone());
+        verify(habitRepository, never()).insertCompletionYear(anyLong(), anyInt(), any());
+        verify(habitRepository, never()).updateCompletionYear(anyLong(), anyInt(), any());
+    }
+
+    @Test
+    void checkIn_shouldDropProjectionForBackfill() {
+        LocalDate last = LocalDate.of(2025, 3, 10);
+        LocalDate earlier = LocalDate.of(2025, 3, 1);
+        HabitStats stored = new HabitStats(1L, 1, 1, last, last);
+        when(habitRepository.findExistingIds(Set.of(1L))).thenReturn(List.of(1L));
+        when(habitStatsRepository.findAllById(Set.of(1L))).thenReturn(List.of(stored));
+        when(habitRepository.findCompletionYear(1L, 2025)).thenReturn(List.<byte[]>of(CompletionSet.withDay(null, last, true)));
+
+        habitService.checkIn(List.of(new CheckInDTO(1L, earlier, true)));
+
+        verify(habitRepository).updateCompletionYear(eq(1L), eq(2025), any());
+        verify(habitStatsRepository).deleteAll(List.of(stored));
+    }
+
+    @Test
+    void checkIn_shouldShadowArchivedYearWithHotRow() {
+        LocalDate day = LocalDate.now().minusYears(3);
+        when(habitRepository.findExistingIds(Set.of(1L))).thenReturn(List.of(1L));
+        when(habitRepository.findCompletionYear(1L, day.getYear())).thenReturn(List.of());
+        when(archiveRepository.findById(1L)).thenReturn(Optional.of(ArchivedCompletions.of(1L,
+                new TreeMap<>(Map.of(day.getYear(), CompletionSet.withDay(null, day, true))))));
+
+        assertTrue(habitService.checkIn(List.of(new CheckInDTO(1L, day, false))).get(0).isSuccess());
+
+        // год опустел, но строка остаётся нулевой — иначе отметка вернулась бы из архива
+        verify(habitRepository).insertCompletionYear(eq(1L), eq(day.getYear()),
+                argThat((byte[] bits) -> CompletionSet.countDays(bits, 0, CompletionSet.DAYS_PER_YEAR) == 0));
+        verify(habitRepository, never()).deleteCompletionYear(anyLong(), anyInt());
+    }
+
+    @Test
+    void getHeatmap_shouldEncodeYearBitsWithQueuedOverlay() {
+        byte[] stored = CompletionSet.withDay(null, LocalDate.of(2024, 1, 1), true);
+        stored = CompletionSet.withDay(stored, LocalDate.of(2024, 12, 31), true);
+        when(habitRepository.existsById(1L)).thenReturn(true);
+        when(habitRepository.findCompletionYear(1L, 2024)).thenReturn(List.<byte[]>of(stored));
+        when(writeBehind.snapshot()).thenReturn(Map.of(1L, Map.of(LocalDate.of(2024, 2, 29), true)));
+
+        HabitHeatmapDTO heatmap = habitService.getHeatmap(1L, 2024);
+
+        assertEquals(366, heatmap.getDaysInYear());
+        assertEquals(3, heatmap.getTotal());
+        assertEquals(1, heatmap.getMonthly()[0]);
+        assertEquals(1, heatmap.getMonthly()[1]);
+        assertEquals(1, heatmap.getMonthly()[11]);
+        byte[] bits = Base64.getDecoder().decode(heatmap.getDays());
+        assertEquals(CompletionSet.BYTES_PER_YEAR, bits.length);
+        assertTrue(CompletionSet.contains(bits, LocalDate.of(2024, 2, 29)));
+        assertFalse(CompletionSet.contains(bits, LocalDate.of(2024, 3, 1)));
+    }
+
+    @Test
+    void getHeatmap_shouldThrow_whenNotFound() {
+        when(habitRepository.existsById(1L)).thenReturn(false);
+        assertThrows(RuntimeException.class, () -> habitService.getHeatmap(1L, 2024));
+        verify(habitRepository, never()).findCompletionYear(anyLong(), anyInt());
+    }
 }